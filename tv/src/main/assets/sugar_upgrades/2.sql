@@ -0,0 +1 @@
+INSERT INTO VIDEO_GENRE (VIDEO, GENRE, IS_MOVIE) WITH RECURSIVE SPLIT(VIDEO, IS_MOVIE, GENRE, REST) AS (SELECT V.ID, V.IS_MOVIE, '', COALESCE(M.FLATTENED_GENRES, T.FLATTENED_GENRES, '') || ',' FROM VIDEO V LEFT JOIN MOVIE M ON V.MOVIE = M.ID LEFT JOIN TV_SHOW T ON V.TV_SHOW = T.ID UNION ALL SELECT VIDEO, IS_MOVIE, SUBSTR(REST, 1, INSTR(REST, ',') - 1), SUBSTR(REST, INSTR(REST, ',') + 1) FROM SPLIT WHERE REST <> '') SELECT VIDEO, GENRE, IS_MOVIE FROM SPLIT WHERE GENRE <> '';
@@ -0,0 +1,2 @@
+ALTER TABLE VIDEO ADD COLUMN SOURCE_ID INTEGER;
+UPDATE VIDEO SET SOURCE_ID = (SELECT S.ID FROM SOURCE S WHERE INSTR(VIDEO.VIDEO_URL, S.M_SOURCE) > 0 AND S.M_TYPE = (CASE VIDEO.IS_MOVIE WHEN 1 THEN 'MOVIE' ELSE 'TV_SHOW' END) LIMIT 1);
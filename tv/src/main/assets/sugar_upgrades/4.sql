@@ -0,0 +1,5 @@
+ALTER TABLE VIDEO ADD COLUMN RELEASE_DAY INTEGER;
+UPDATE VIDEO SET RELEASE_DAY = CAST(JULIANDAY((SELECT M.RELEASE_DATE FROM MOVIE M WHERE M.ID = VIDEO.MOVIE)) - 2440587.5 AS INTEGER) WHERE IS_MOVIE = 1 AND MOVIE IS NOT NULL;
+UPDATE VIDEO SET RELEASE_DAY = CAST(JULIANDAY((SELECT E.AIR_DATE FROM TV_SHOW T JOIN EPISODE E ON E.ID = T.EPISODE WHERE T.ID = VIDEO.TV_SHOW)) - 2440587.5 AS INTEGER) WHERE IS_MOVIE = 0 AND TV_SHOW IS NOT NULL;
+DROP INDEX IF EXISTS IDX_VIDEO_NAME_IS_MOVIE;
+DROP INDEX IF EXISTS IDX_VIDEO_MATCHED_MOVIE_WATCHED;
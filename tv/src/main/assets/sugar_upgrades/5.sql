@@ -0,0 +1,5 @@
+UPDATE VIDEO SET CARD_IMAGE_URL = NULL WHERE CARD_IMAGE_URL LIKE '%/originalnull';
+UPDATE VIDEO SET CARD_IMAGE_URL = SUBSTR(CARD_IMAGE_URL, INSTR(CARD_IMAGE_URL, '/original/') + 9) WHERE INSTR(CARD_IMAGE_URL, '/original/') > 0;
+UPDATE VIDEO SET BACKGROUND_IMAGE_URL = NULL WHERE BACKGROUND_IMAGE_URL LIKE '%/originalnull';
+UPDATE VIDEO SET BACKGROUND_IMAGE_URL = SUBSTR(BACKGROUND_IMAGE_URL, INSTR(BACKGROUND_IMAGE_URL, '/original/') + 9) WHERE INSTR(BACKGROUND_IMAGE_URL, '/original/') > 0;
+UPDATE EPISODE SET STILL_PATH = SUBSTR(STILL_PATH, INSTR(STILL_PATH, '/original/') + 9) WHERE INSTR(STILL_PATH, '/original/') > 0;
@@ -0,0 +1,2 @@
+ALTER TABLE VIDEO ADD COLUMN RESUME_PERCENT INTEGER DEFAULT 0;
+ALTER TABLE VIDEO ADD COLUMN LAST_PLAYED INTEGER DEFAULT 0;
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.jerrellmardis.amphitheatre.db.DatabaseSchema;
+import com.jerrellmardis.amphitheatre.db.RelatedMoviesDao;
+import com.jerrellmardis.amphitheatre.db.SearchDao;
+import com.orm.SugarApp;
+
+public class AmphitheatreApplication extends SugarApp {
+
+    private static AmphitheatreApplication sInstance;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        sInstance = this;
+
+        // before anything can query the tables; each statement is a no-op once they exist
+        DatabaseSchema.createTables();
+        DatabaseSchema.createIndexes();
+
+        new Thread() {
+            public void run() {
+                SearchDao.rebuildIfEmpty();
+                RelatedMoviesDao.rebuildIfNeeded(AmphitheatreApplication.this);
+            }
+        }.start();
+    }
+
+    /**
+     * Returns the database Sugar is using, for queries that need a raw cursor.
+     */
+    public static SQLiteDatabase getSQLiteDatabase() {
+        return sInstance.getDatabase().getDB();
+    }
+}
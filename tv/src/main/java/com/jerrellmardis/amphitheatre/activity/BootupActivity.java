@@ -21,6 +21,7 @@ import android.app.PendingIntent;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
+import android.os.SystemClock;
 
 import com.jerrellmardis.amphitheatre.service.RecommendationsService;
 import com.jerrellmardis.amphitheatre.util.Utils;
@@ -45,9 +46,9 @@ public class BootupActivity extends BroadcastReceiver {
         PendingIntent alarmIntent = PendingIntent.getService(context,
                 RECOMMENDATIONS_UPDATE_REQUEST_CODE, intent, 0);
 
-        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP,
-                INITIAL_DELAY,
-                AlarmManager.INTERVAL_HALF_HOUR,
+        // posted once after boot, later updates are triggered by scans and watched videos
+        alarmManager.set(AlarmManager.ELAPSED_REALTIME_WAKEUP,
+                SystemClock.elapsedRealtime() + INITIAL_DELAY,
                 alarmIntent);
     }
 }
\ No newline at end of file
@@ -17,12 +17,29 @@
 package com.jerrellmardis.amphitheatre.activity;
 
 import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
 import android.os.Bundle;
 
 import com.jerrellmardis.amphitheatre.R;
+import com.jerrellmardis.amphitheatre.db.VideoCache;
+import com.jerrellmardis.amphitheatre.model.Video;
+import com.jerrellmardis.amphitheatre.util.Constants;
 
 public class DetailsActivity extends Activity {
 
+    /**
+     * Builds an Intent that shows the details of a video, or of the whole TV show the video
+     * belongs to when isVideo is false. Only the video's id is passed along, the video itself is
+     * handed over through the {@link VideoCache}.
+     */
+    public static Intent newIntent(Context context, Video video, boolean isVideo) {
+        Intent intent = new Intent(context, DetailsActivity.class);
+        intent.putExtra(Constants.IS_VIDEO, isVideo);
+        intent.putExtra(Constants.VIDEO_ID, VideoCache.put(video));
+        return intent;
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
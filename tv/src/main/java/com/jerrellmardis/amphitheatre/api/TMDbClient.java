@@ -23,6 +23,7 @@ import com.jerrellmardis.amphitheatre.model.tmdb.Config;
 import com.jerrellmardis.amphitheatre.model.tmdb.Episode;
 import com.jerrellmardis.amphitheatre.model.tmdb.Movie;
 import com.jerrellmardis.amphitheatre.model.tmdb.SearchResult;
+import com.jerrellmardis.amphitheatre.model.tmdb.Season;
 import com.jerrellmardis.amphitheatre.model.tmdb.TvShow;
 import com.jerrellmardis.amphitheatre.util.ApiConstants;
 
@@ -48,6 +49,9 @@ public class TMDbClient {
         @GET("/tv/{id}")
         TvShow getTvShow(@Path("id") Long id);
 
+        @GET("/tv/{id}/season/{season_number}")
+        Season getSeason(@Path("id") Long id, @Path("season_number") int seasonNumber);
+
         @GET("/tv/{id}/season/{season_number}/episode/{episode_number}")
         Episode getEpisode(@Path("id") Long id, @Path("season_number") int seasonNumber,
                            @Path("episode_number") int episodeNumber);
@@ -102,6 +106,10 @@ public class TMDbClient {
         return getService().findTvShow(name);
     }
 
+    public static Season getSeason(Long id, int seasonNumber) {
+        return getService().getSeason(id, seasonNumber);
+    }
+
     public static Episode getEpisode(Long id, int seasonNumber, int episodeNumber) {
         return getService().getEpisode(id, seasonNumber, episodeNumber);
     }
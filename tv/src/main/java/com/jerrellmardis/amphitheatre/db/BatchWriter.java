@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.db;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.jerrellmardis.amphitheatre.AmphitheatreApplication;
+import com.orm.SugarRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind queue for Sugar records.
+ *
+ * Saves, and any writes that depend on the saved ids, are queued in call order and written
+ * together inside a single transaction once {@link #BATCH_SIZE} records are pending or
+ * {@link #FLUSH_DELAY_MS} has passed since the first pending save, rather than paying for an
+ * implicit transaction per row. Records that reference each other (e.g. a Movie and its Video)
+ * must be queued parent first so the parent has an id by the time the child is written.
+ *
+ * A batch that fails is logged and written again after a short delay. If it keeps failing, its
+ * records are written one at a time so only the ones that can't be saved are lost, and
+ * {@link #flush()} reports the loss so callers can hold off on work that needs the records.
+ */
+public final class BatchWriter {
+
+    private static final String TAG = "BatchWriter";
+
+    private static final int BATCH_SIZE = 50;
+    private static final long FLUSH_DELAY_MS = 1000;
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MS = 2000;
+
+    private static BatchWriter sInstance;
+
+    // SugarRecords to save, Runnables to run and Callbacks to call, in call order
+    private final List<Object> mPending = new ArrayList<Object>();
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private ScheduledFuture<?> mScheduledFlush;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Runs once everything queued before it has been committed.
+     */
+    private static final class Callback {
+
+        final Runnable mRunnable;
+
+        Callback(Runnable runnable) {
+            mRunnable = runnable;
+        }
+    }
+
+    private BatchWriter() { }
+
+    public static synchronized BatchWriter getInstance() {
+        if (sInstance == null) {
+            sInstance = new BatchWriter();
+        }
+        return sInstance;
+    }
+
+    /**
+     * Queues the records to be saved. The records are written in the order they were queued.
+     */
+    public synchronized void save(SugarRecord<?>... records) {
+        Collections.addAll(mPending, records);
+        scheduleFlush();
+    }
+
+    /**
+     * Queues a write to run inside the batch transaction, after every record queued before it has
+     * been saved. Used for tables Sugar doesn't manage.
+     */
+    public synchronized void execute(Runnable write) {
+        mPending.add(write);
+        scheduleFlush();
+    }
+
+    /**
+     * Queues a callback to run on the writing thread once every record queued before it has been
+     * committed, e.g. to publish a video only when it has an id. It still runs if some of those
+     * records couldn't be saved, so it should check their ids.
+     */
+    public synchronized void afterSave(Runnable callback) {
+        mPending.add(new Callback(callback));
+        scheduleFlush();
+    }
+
+    private void scheduleFlush() {
+        if (mPending.size() >= BATCH_SIZE) {
+            flush();
+        } else if (mScheduledFlush == null) {
+            mScheduledFlush = mExecutor.schedule(mFlushRunnable, FLUSH_DELAY_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes all pending records in a single transaction. Blocks until the write has completed,
+     * retries included, so it must not be called from the main thread.
+     *
+     * @return true if every pending record was saved, false if some of them had to be dropped
+     */
+    public synchronized boolean flush() {
+        if (mScheduledFlush != null) {
+            mScheduledFlush.cancel(false);
+            mScheduledFlush = null;
+        }
+
+        if (mPending.isEmpty()) {
+            return true;
+        }
+
+        List<Object> batch = new ArrayList<Object>(mPending);
+        mPending.clear();
+
+        long start = SystemClock.elapsedRealtime();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(batch);
+                break;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    Log.e(TAG, "Unable to save " + describe(batch) +
+                            ", saving one record at a time", e);
+                    return writeEach(batch);
+                }
+
+                Log.w(TAG, "Unable to save " + describe(batch) + ", retrying", e);
+                SystemClock.sleep(RETRY_DELAY_MS * attempt);
+            }
+        }
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - start);
+
+        Log.d(TAG, "Saved " + batch.size() + " records in " + elapsed + " ms (" +
+                (batch.size() * 1000 / elapsed) + " rows/s)");
+
+        for (Object item : batch) {
+            if (item instanceof Callback) {
+                ((Callback) item).mRunnable.run();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the records and runs the writes of a batch in one transaction. Records inserted by
+     * a failed transaction get their ids cleared, so a retry inserts them again.
+     */
+    private static void write(List<Object> batch) {
+        List<SugarRecord<?>> inserted = new ArrayList<SugarRecord<?>>();
+
+        SQLiteDatabase db = AmphitheatreApplication.getSQLiteDatabase();
+        db.beginTransaction();
+        try {
+            for (Object item : batch) {
+                if (item instanceof SugarRecord) {
+                    SugarRecord<?> record = (SugarRecord<?>) item;
+                    if (record.getId() == null) {
+                        inserted.add(record);
+                    }
+                    record.save();
+                } else if (item instanceof Runnable) {
+                    ((Runnable) item).run();
+                }
+            }
+            db.setTransactionSuccessful();
+            inserted.clear();
+        } finally {
+            db.endTransaction();
+
+            for (SugarRecord<?> record : inserted) {
+                record.setId(null);
+            }
+        }
+    }
+
+    private static boolean writeEach(List<Object> batch) {
+        boolean isSaved = true;
+        for (Object item : batch) {
+            if (item instanceof Callback) {
+                ((Callback) item).mRunnable.run();
+                continue;
+            }
+
+            try {
+                write(Collections.singletonList(item));
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Dropping " + describe(Collections.singletonList(item)), e);
+                isSaved = false;
+            }
+        }
+        return isSaved;
+    }
+
+    /**
+     * Returns e.g. "3 items (Movie x1, Video x1, write x1)" for the log.
+     */
+    private static String describe(List<Object> batch) {
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        for (Object item : batch) {
+            String name = item instanceof SugarRecord ? item.getClass().getSimpleName() :
+                    item instanceof Callback ? "callback" : "write";
+            Integer count = counts.get(name);
+            counts.put(name, count == null ? 1 : count + 1);
+        }
+
+        StringBuilder sb = new StringBuilder().append(batch.size()).append(" items (");
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (sb.charAt(sb.length() - 1) != '(') {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append(" x").append(entry.getValue());
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.db;
+
+import android.util.Log;
+
+import com.orm.SugarRecord;
+
+/**
+ * Schema additions that Sugar doesn't manage on its own.
+ *
+ * Sugar only creates tables for its records, so the search table and the indexes are
+ * (re)created here on every start. Existing databases are migrated by the scripts in
+ * assets/sugar_upgrades.
+ */
+public final class DatabaseSchema {
+
+    private static final String TAG = "DatabaseSchema";
+
+    private static final String[] TABLES = {
+            SearchDao.CREATE_TABLE,
+            RelatedMoviesDao.CREATE_TABLE
+    };
+
+    private static final String[] INDEXES = {
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_VIDEO_URL ON VIDEO (VIDEO_URL)",
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_SOURCE_ID ON VIDEO (SOURCE_ID)",
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_SOURCE_MOVIE_NAME ON VIDEO (SOURCE_ID, IS_MATCHED, IS_MOVIE, NAME COLLATE NOCASE)",
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_MATCHED_MOVIE_CREATED ON VIDEO (IS_MATCHED, IS_MOVIE, CREATED)",
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_NAME_MOVIE_DAY ON VIDEO (NAME, IS_MOVIE, RELEASE_DAY)",
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_MATCHED_MOVIE_WATCHED_DAY ON VIDEO (IS_MATCHED, IS_MOVIE, IS_WATCHED, RELEASE_DAY)",
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_LAST_PLAYED ON VIDEO (LAST_PLAYED)",
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_GENRE_GENRE ON VIDEO_GENRE (GENRE, IS_MOVIE, VIDEO)",
+            "CREATE INDEX IF NOT EXISTS IDX_VIDEO_GENRE_VIDEO ON VIDEO_GENRE (VIDEO)",
+            "CREATE INDEX IF NOT EXISTS IDX_RELATED_MOVIE_VIDEO ON RELATED_MOVIE (VIDEO, SCORE)",
+            "CREATE INDEX IF NOT EXISTS IDX_RELATED_MOVIE_RELATED ON RELATED_MOVIE (RELATED)"
+    };
+
+    private DatabaseSchema() { }
+
+    public static void createTables() {
+        for (String sql : TABLES) {
+            try {
+                SugarRecord.executeQuery(sql);
+            } catch (Exception e) {
+                Log.e(TAG, "Unable to create table: " + sql, e);
+            }
+        }
+    }
+
+    public static void createIndexes() {
+        for (String sql : INDEXES) {
+            try {
+                SugarRecord.executeQuery(sql);
+            } catch (Exception e) {
+                Log.e(TAG, "Unable to create index: " + sql, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.db;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs the library queries that screens wait on, such as the browse rows, genre grids and search
+ * pages. {@link android.os.AsyncTask#execute} shares one serial executor with every other task of
+ * the process, including the listing of a share while a source is added, so these queries get a
+ * thread of their own.
+ */
+public final class QueryExecutor {
+
+    private static final Executor sExecutor = Executors.newSingleThreadExecutor();
+
+    private QueryExecutor() { }
+
+    public static Executor get() {
+        return sExecutor;
+    }
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.db;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.jerrellmardis.amphitheatre.AmphitheatreApplication;
+import com.jerrellmardis.amphitheatre.model.Video;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Precomputed "related movies" lists, stored in the RELATED_MOVIE table as the
+ * {@link #MAX_RELATED} best scoring movies for every matched movie.
+ *
+ * Movies are compared by the Jaccard similarity of their genres, with each genre weighted by how
+ * rare it is in the library, plus small bonuses for a shared production company and for being
+ * released close together. Only movies sharing at least one genre are related.
+ *
+ * The lists are maintained at scan time: new movies get a full list and are merged into the
+ * lists of the movies they are related to, and the lists that referenced a removed movie are
+ * recomputed. Genre weights drift as the library grows, so scores of lists that were not touched
+ * by a scan may be slightly stale; the ranking stays stable enough for a details screen.
+ */
+public final class RelatedMoviesDao {
+
+    private static final String TAG = "RelatedMoviesDao";
+
+    public static final int MAX_RELATED = 15;
+
+    private static final float COMPANY_BONUS = 0.1f;
+    private static final float MAX_COMPANY_BONUS = 0.2f;
+    private static final float YEAR_BONUS = 0.1f;
+    private static final int YEAR_WINDOW = 10;
+
+    private static final String PREF_IS_BUILT = "relatedMoviesBuilt";
+
+    static final String CREATE_TABLE =
+            "CREATE TABLE IF NOT EXISTS RELATED_MOVIE (" +
+            "VIDEO INTEGER NOT NULL, RELATED INTEGER NOT NULL, SCORE REAL NOT NULL)";
+
+    private static final String FEATURES =
+            "SELECT V.ID, M.TITLE, M.FLATTENED_GENRES, M.FLATTENED_PRODUCTION_COMPANIES, " +
+            "M.RELEASE_DATE FROM VIDEO V JOIN MOVIE M ON M.ID = V.MOVIE " +
+            "WHERE V.IS_MATCHED = 1 AND V.IS_MOVIE = 1";
+
+    private static final String RELATED_MOVIES =
+            "SELECT V.* FROM RELATED_MOVIE R JOIN VIDEO V ON V.ID = R.RELATED " +
+            "WHERE R.VIDEO = ? ORDER BY R.SCORE DESC";
+
+    private static final String LIST_STATS =
+            "SELECT VIDEO, COUNT(*), MIN(SCORE) FROM RELATED_MOVIE GROUP BY VIDEO";
+
+    private static final String INSERT =
+            "INSERT INTO RELATED_MOVIE (VIDEO, RELATED, SCORE) VALUES (?, ?, ?)";
+
+    private static final String DELETE_LOWEST =
+            "DELETE FROM RELATED_MOVIE WHERE ROWID = (SELECT ROWID FROM RELATED_MOVIE " +
+            "WHERE VIDEO = ? ORDER BY SCORE LIMIT 1)";
+
+    private static final String MIN_SCORE = "SELECT MIN(SCORE) FROM RELATED_MOVIE WHERE VIDEO = ?";
+
+    private RelatedMoviesDao() { }
+
+    /**
+     * Returns the movies related to the given movie, most similar first.
+     */
+    public static List<Video> getRelatedMovies(Video video) {
+        if (video.getId() == null) {
+            return Collections.emptyList();
+        }
+        return Video.findWithQuery(Video.class, RELATED_MOVIES, String.valueOf(video.getId()));
+    }
+
+    /**
+     * Updates the lists after a scan. The added videos must have been written already; videos
+     * that aren't matched movies are ignored. Blocks, so it must not be called from the main
+     * thread.
+     */
+    public static void update(Collection<Video> added, Collection<Long> removedIds) {
+        Set<Long> addedIds = new HashSet<Long>();
+        for (Video video : added) {
+            if (video.getId() != null && video.isMovie() && video.isMatched()) {
+                addedIds.add(video.getId());
+            }
+        }
+
+        if (addedIds.isEmpty() && removedIds.isEmpty()) {
+            return;
+        }
+
+        try {
+            updateLists(addedIds, new HashSet<Long>(removedIds));
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to update the related movies", e);
+        }
+    }
+
+    /**
+     * Builds every list once, e.g. after upgrading from a version that had no related movies
+     * table; scans keep them up to date after that. Completion is recorded in a preference
+     * rather than read from the table, which stays empty when no two movies share a genre.
+     * Blocks, so it must not be called from the main thread.
+     */
+    public static void rebuildIfNeeded(Context context) {
+        SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
+        if (prefs.getBoolean(PREF_IS_BUILT, false)) {
+            return;
+        }
+
+        try {
+            Set<Long> ids = new HashSet<Long>();
+            for (Features features : loadFeatures().values()) {
+                ids.add(features.id);
+            }
+            updateLists(ids, Collections.<Long>emptySet());
+
+            prefs.edit().putBoolean(PREF_IS_BUILT, true).apply();
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to build the related movies", e);
+        }
+    }
+
+    private static void updateLists(Set<Long> addedIds, Set<Long> removedIds) {
+        SQLiteDatabase db = AmphitheatreApplication.getSQLiteDatabase();
+
+        Map<Long, Features> library = loadFeatures();
+        Map<String, Float> genreWeights = getGenreWeights(library.values());
+        for (Features features : library.values()) {
+            features.computeGenreWeight(genreWeights);
+        }
+
+        db.beginTransaction();
+        try {
+            // lists that lose a movie are recomputed along with the lists of the new movies
+            Set<Long> recompute = new HashSet<Long>(addedIds);
+            if (!removedIds.isEmpty()) {
+                String ids = TextUtils.join(",", removedIds);
+                recompute.addAll(queryIds(db, "SELECT DISTINCT VIDEO FROM RELATED_MOVIE " +
+                        "WHERE RELATED IN (" + ids + ")"));
+                db.execSQL("DELETE FROM RELATED_MOVIE WHERE VIDEO IN (" + ids + ") " +
+                        "OR RELATED IN (" + ids + ")");
+            }
+            recompute.removeAll(removedIds);
+            recompute.retainAll(library.keySet());
+
+            SQLiteStatement insert = db.compileStatement(INSERT);
+            try {
+                for (Long id : recompute) {
+                    db.execSQL("DELETE FROM RELATED_MOVIE WHERE VIDEO = ?", new Object[] { id });
+
+                    List<Related> related = score(library.get(id), library.values());
+                    for (Related r : related.subList(0, Math.min(MAX_RELATED, related.size()))) {
+                        insert(insert, id, r.id, r.score);
+                    }
+                }
+
+                mergeAddedMovies(db, insert, addedIds, recompute, library);
+            } finally {
+                insert.close();
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+
+        Log.d(TAG, "Updated " + addedIds.size() + " added and " + removedIds.size() +
+                " removed movies");
+    }
+
+    /**
+     * Inserts the added movies into the untouched lists they now rank in, dropping the lowest
+     * entry of a list that is already full.
+     */
+    private static void mergeAddedMovies(SQLiteDatabase db, SQLiteStatement insert,
+                                         Set<Long> addedIds, Set<Long> recomputed,
+                                         Map<Long, Features> library) {
+        if (addedIds.isEmpty()) {
+            return;
+        }
+
+        Map<Long, Integer> counts = new HashMap<Long, Integer>();
+        Map<Long, Float> minScores = new HashMap<Long, Float>();
+        Cursor cursor = db.rawQuery(LIST_STATS, null);
+        try {
+            while (cursor.moveToNext()) {
+                counts.put(cursor.getLong(0), cursor.getInt(1));
+                minScores.put(cursor.getLong(0), cursor.getFloat(2));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        SQLiteStatement deleteLowest = db.compileStatement(DELETE_LOWEST);
+        SQLiteStatement minScore = db.compileStatement(MIN_SCORE);
+        try {
+            for (Long addedId : addedIds) {
+                Features added = library.get(addedId);
+                if (added == null) {
+                    continue;
+                }
+
+                for (Features other : library.values()) {
+                    if (recomputed.contains(other.id)) {
+                        continue;
+                    }
+
+                    float score = similarity(other, added);
+                    if (score <= 0) {
+                        continue;
+                    }
+
+                    Integer count = counts.get(other.id);
+                    Float min = minScores.get(other.id);
+
+                    if (count == null) {
+                        insert(insert, other.id, added.id, score);
+                        counts.put(other.id, 1);
+                        minScores.put(other.id, score);
+                    } else if (count < MAX_RELATED) {
+                        insert(insert, other.id, added.id, score);
+                        counts.put(other.id, count + 1);
+                        minScores.put(other.id, Math.min(min, score));
+                    } else if (score > min) {
+                        deleteLowest.bindLong(1, other.id);
+                        deleteLowest.executeUpdateDelete();
+                        insert(insert, other.id, added.id, score);
+
+                        minScore.bindLong(1, other.id);
+                        minScores.put(other.id, Float.parseFloat(minScore.simpleQueryForString()));
+                    }
+                }
+            }
+        } finally {
+            deleteLowest.close();
+            minScore.close();
+        }
+    }
+
+    private static List<Related> score(Features movie, Collection<Features> library) {
+        List<Related> related = new ArrayList<Related>();
+        for (Features other : library) {
+            float score = similarity(movie, other);
+            if (score > 0) {
+                related.add(new Related(other.id, score));
+            }
+        }
+
+        Collections.sort(related, new Comparator<Related>() {
+            @Override
+            public int compare(Related lhs, Related rhs) {
+                return Float.compare(rhs.score, lhs.score);
+            }
+        });
+        return related;
+    }
+
+    /**
+     * Weighted genre Jaccard plus the production company and release year bonuses, or 0 if the
+     * movies share no genre or are the same movie.
+     */
+    static float similarity(Features a, Features b) {
+        if (a.id == b.id || (a.title != null && a.title.equals(b.title))) {
+            return 0;
+        }
+
+        float shared = 0;
+        for (String genre : a.genres) {
+            if (b.genres.contains(genre)) {
+                shared += a.weights.get(genre);
+            }
+        }
+
+        if (shared == 0) {
+            return 0;
+        }
+
+        float score = shared / (a.genreWeight + b.genreWeight - shared);
+
+        float companyBonus = 0;
+        for (String company : a.companies) {
+            if (b.companies.contains(company)) {
+                companyBonus += COMPANY_BONUS;
+            }
+        }
+        score += Math.min(companyBonus, MAX_COMPANY_BONUS);
+
+        if (a.year > 0 && b.year > 0) {
+            int distance = Math.abs(a.year - b.year);
+            score += YEAR_BONUS * Math.max(0, YEAR_WINDOW - distance) / YEAR_WINDOW;
+        }
+
+        return score;
+    }
+
+    /**
+     * Weights each genre by its inverse document frequency so sharing a rare genre counts for
+     * more than sharing "Drama".
+     */
+    private static Map<String, Float> getGenreWeights(Collection<Features> library) {
+        Map<String, Integer> frequencies = new HashMap<String, Integer>();
+        for (Features features : library) {
+            for (String genre : features.genres) {
+                Integer frequency = frequencies.get(genre);
+                frequencies.put(genre, frequency == null ? 1 : frequency + 1);
+            }
+        }
+
+        Map<String, Float> weights = new HashMap<String, Float>(frequencies.size());
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            weights.put(entry.getKey(),
+                    (float) Math.log(1 + (double) library.size() / entry.getValue()));
+        }
+        return weights;
+    }
+
+    private static Map<Long, Features> loadFeatures() {
+        Map<Long, Features> library = new HashMap<Long, Features>();
+        Cursor cursor = AmphitheatreApplication.getSQLiteDatabase().rawQuery(FEATURES, null);
+        try {
+            while (cursor.moveToNext()) {
+                Features features = new Features(cursor.getLong(0), cursor.getString(1),
+                        split(cursor.getString(2)), split(cursor.getString(3)),
+                        parseYear(cursor.getString(4)));
+                library.put(features.id, features);
+            }
+        } finally {
+            cursor.close();
+        }
+        return library;
+    }
+
+    private static List<Long> queryIds(SQLiteDatabase db, String sql) {
+        List<Long> ids = new ArrayList<Long>();
+        Cursor cursor = db.rawQuery(sql, null);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return ids;
+    }
+
+    private static void insert(SQLiteStatement insert, long videoId, long relatedId, float score) {
+        insert.bindLong(1, videoId);
+        insert.bindLong(2, relatedId);
+        insert.bindDouble(3, score);
+        insert.executeInsert();
+    }
+
+    private static Set<String> split(String flattened) {
+        if (TextUtils.isEmpty(flattened)) {
+            return Collections.emptySet();
+        }
+
+        Set<String> values = new HashSet<String>(Arrays.asList(flattened.split(",")));
+        values.remove("");
+        return values;
+    }
+
+    private static int parseYear(String releaseDate) {
+        if (releaseDate == null || releaseDate.length() < 4) {
+            return 0;
+        }
+
+        try {
+            return Integer.parseInt(releaseDate.substring(0, 4));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    static final class Features {
+        final long id;
+        final String title;
+        final Set<String> genres;
+        final Set<String> companies;
+        final int year;
+        Map<String, Float> weights;
+        float genreWeight;
+
+        Features(long id, String title, Set<String> genres, Set<String> companies, int year) {
+            this.id = id;
+            this.title = title;
+            this.genres = genres;
+            this.companies = companies;
+            this.year = year;
+        }
+
+        void computeGenreWeight(Map<String, Float> genreWeights) {
+            weights = genreWeights;
+            genreWeight = 0;
+            for (String genre : genres) {
+                genreWeight += genreWeights.get(genre);
+            }
+        }
+    }
+
+    private static final class Related {
+        final long id;
+        final float score;
+
+        Related(long id, float score) {
+            this.id = id;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,441 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.jerrellmardis.amphitheatre.AmphitheatreApplication;
+import com.jerrellmardis.amphitheatre.model.Video;
+import com.jerrellmardis.amphitheatre.model.tmdb.Episode;
+import com.jerrellmardis.amphitheatre.model.tmdb.Movie;
+import com.jerrellmardis.amphitheatre.model.tmdb.TvShow;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Full-text search over the library metadata, backed by the VIDEO_SEARCH FTS4 table.
+ *
+ * The table is keyed by the video id (DOCID) and holds one column per kind of field so hits
+ * can be ranked. Each query word scores the weight of the most important column it matched in,
+ * read from matchinfo(), so a title hit ranks above a genre hit which ranks above a hit in an
+ * overview. Text is accent-folded and lower-cased in Java before it is stored, and articles are
+ * dropped, so the stock tokenizer is enough and queries are normalized the same way.
+ *
+ * A {@link Result} keeps the ids of every match, so a query that only extends the previous one
+ * (the user kept typing) is run against those rows alone.
+ */
+public final class SearchDao {
+
+    private static final String TAG = "SearchDao";
+
+    static final String CREATE_TABLE =
+            "CREATE VIRTUAL TABLE IF NOT EXISTS VIDEO_SEARCH USING fts4(" +
+            "NAME, ORIGINAL_TITLE, GENRES, COMPANIES, TAGLINE, OVERVIEW, EPISODE)";
+
+    private static final String INSERT =
+            "INSERT INTO VIDEO_SEARCH (DOCID, NAME, ORIGINAL_TITLE, GENRES, COMPANIES, TAGLINE, " +
+            "OVERVIEW, EPISODE) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String DELETE = "DELETE FROM VIDEO_SEARCH WHERE DOCID = ?";
+
+    private static final String SEARCH =
+            "SELECT VIDEO_SEARCH.DOCID, V.NAME, V.CARD_IMAGE_URL, matchinfo(VIDEO_SEARCH, 'pcx') " +
+            "FROM VIDEO_SEARCH JOIN VIDEO V ON V.ID = VIDEO_SEARCH.DOCID " +
+            "WHERE VIDEO_SEARCH MATCH ?";
+
+    // weight of a hit in each column of VIDEO_SEARCH, in table order
+    private static final int[] COLUMN_WEIGHTS = { 8, 6, 3, 3, 1, 1, 1 };
+
+    // previous matches are inlined into the refined query, so only small sets are refined
+    private static final int MAX_REFINED_IDS = 1000;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{Nd}]+");
+    private static final Set<String> ARTICLES = new HashSet<String>(Arrays.asList("a", "an", "the"));
+
+    private SearchDao() { }
+
+    /**
+     * Adds or replaces the search entry of a saved video.
+     */
+    public static void index(Video video) {
+        if (video.getId() == null) {
+            return;
+        }
+
+        String originalTitle = null;
+        String genres = null;
+        String companies = null;
+        String tagline = null;
+        String episodeText = null;
+
+        Movie movie = video.getMovie();
+        if (movie != null) {
+            originalTitle = join(movie.getTitle(), movie.getOriginalTitle());
+            genres = movie.getFlattenedGenres();
+            companies = movie.getFlattenedProductionCompanies();
+            tagline = movie.getTagline();
+        }
+
+        TvShow tvShow = video.getTvShow();
+        if (tvShow != null) {
+            originalTitle = tvShow.getOriginalName();
+            genres = tvShow.getFlattenedGenres();
+
+            Episode episode = tvShow.getEpisode();
+            if (episode != null) {
+                episodeText = join(episode.getName(), episode.getOverview());
+            }
+        }
+
+        SQLiteDatabase db = AmphitheatreApplication.getSQLiteDatabase();
+        db.execSQL(DELETE, new Object[] { video.getId() });
+        db.execSQL(INSERT, new Object[] {
+                video.getId(),
+                normalize(video.getName()),
+                normalize(originalTitle),
+                normalize(genres),
+                normalize(companies),
+                normalize(tagline),
+                normalize(video.getOverview()),
+                normalize(episodeText)
+        });
+    }
+
+    public static void delete(Long videoId) {
+        AmphitheatreApplication.getSQLiteDatabase().execSQL(DELETE, new Object[] { videoId });
+    }
+
+    /**
+     * Fills the search table from the library if it is empty, e.g. after upgrading from a version
+     * that had no search table. Blocks, so it must not be called from the main thread.
+     */
+    public static void rebuildIfEmpty() {
+        SQLiteDatabase db = AmphitheatreApplication.getSQLiteDatabase();
+
+        try {
+            Cursor cursor = db.rawQuery("SELECT (SELECT COUNT(*) FROM VIDEO_SEARCH), " +
+                    "(SELECT COUNT(*) FROM VIDEO)", null);
+            try {
+                if (!cursor.moveToFirst() || cursor.getLong(0) > 0 || cursor.getLong(1) == 0) {
+                    return;
+                }
+            } finally {
+                cursor.close();
+            }
+
+            List<Video> videos = Video.listAll(Video.class);
+
+            db.beginTransaction();
+            try {
+                for (Video video : videos) {
+                    index(video);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+
+            Log.d(TAG, "Indexed " + videos.size() + " videos");
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to build the search table", e);
+        }
+    }
+
+    /**
+     * Finds the videos matching a query, best matches first. Every word of the query must match
+     * the start of a word in one of the indexed fields. Videos sharing a name (the episodes of a
+     * show) are returned once. Blocks, so it must not be called from the main thread.
+     *
+     * @param previous the result of the previous query, or null. When the new query only
+     *                 extends it, only its matches are searched again.
+     */
+    public static Result search(String query, Result previous) {
+        List<String> tokens = tokenizeQuery(query);
+        if (tokens.isEmpty()) {
+            return new Result(tokens, new long[0], new long[0]);
+        }
+
+        String sql = SEARCH;
+        if (previous != null && previous.refines(tokens) &&
+                previous.mMatchedIds.length <= MAX_REFINED_IDS) {
+            if (previous.mMatchedIds.length == 0) {
+                return new Result(tokens, new long[0], new long[0]);
+            }
+            sql += " AND VIDEO_SEARCH.DOCID IN (" + join(previous.mMatchedIds) + ")";
+        }
+
+        Map<String, Match> matches = new HashMap<String, Match>();
+        List<Long> matchedIds = new ArrayList<Long>();
+
+        Cursor cursor = AmphitheatreApplication.getSQLiteDatabase().rawQuery(sql,
+                new String[] { toMatchQuery(tokens) });
+        try {
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                String name = cursor.getString(1);
+                boolean hasImage = !TextUtils.isEmpty(cursor.getString(2));
+                int score = score(cursor.getBlob(3));
+
+                matchedIds.add(id);
+
+                Match match = matches.get(name);
+                if (match == null) {
+                    matches.put(name, new Match(id, name, hasImage, score));
+                } else {
+                    match.add(id, hasImage, score);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        List<Match> ranked = new ArrayList<Match>(matches.values());
+        Collections.sort(ranked);
+
+        long[] ids = new long[ranked.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = ranked.get(i).mId;
+        }
+
+        long[] allIds = new long[matchedIds.size()];
+        for (int i = 0; i < allIds.length; i++) {
+            allIds[i] = matchedIds.get(i);
+        }
+
+        return new Result(tokens, ids, allIds);
+    }
+
+    /**
+     * Loads one page of the videos of a result.
+     */
+    public static List<Video> getPage(Result result, int offset, int limit) {
+        int end = Math.min(result.mIds.length, offset + limit);
+        if (offset >= end) {
+            return Collections.emptyList();
+        }
+
+        List<Long> ids = new ArrayList<Long>(end - offset);
+        for (int i = offset; i < end; i++) {
+            ids.add(result.mIds[i]);
+        }
+
+        Map<Long, Video> videos = VideoDao.getVideosById(ids);
+
+        List<Video> page = new ArrayList<Video>(ids.size());
+        for (Long id : ids) {
+            Video video = videos.get(id);
+            if (video != null) {
+                page.add(video);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Sums, over the query words, the weight of the best column each word was found in. The
+     * blob is matchinfo's "pcx": the phrase and column counts followed by three 32-bit counters
+     * per phrase and column, the first of which is the number of hits in this row.
+     */
+    private static int score(byte[] matchInfo) {
+        ByteBuffer buffer = ByteBuffer.wrap(matchInfo).order(ByteOrder.nativeOrder());
+        int phrases = buffer.getInt(0);
+        int columns = buffer.getInt(4);
+
+        int score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            int best = 0;
+            for (int column = 0; column < columns && column < COLUMN_WEIGHTS.length; column++) {
+                int hits = buffer.getInt(8 + 12 * (phrase * columns + column));
+                if (hits > 0) {
+                    best = Math.max(best, COLUMN_WEIGHTS[column]);
+                }
+            }
+            score += best;
+        }
+        return score;
+    }
+
+    /**
+     * Tokenizes a query. Articles are dropped unless they are the word still being typed, so
+     * "the" keeps matching while "the dark" only needs "dark".
+     */
+    private static List<String> tokenizeQuery(String query) {
+        List<String> words = tokenize(query);
+        List<String> tokens = new ArrayList<String>(words.size());
+        for (int i = 0; i < words.size(); i++) {
+            if (i < words.size() - 1 && ARTICLES.contains(words.get(i))) {
+                continue;
+            }
+            tokens.add(words.get(i));
+        }
+        return tokens;
+    }
+
+    private static String toMatchQuery(List<String> tokens) {
+        StringBuilder sb = new StringBuilder();
+        for (String token : tokens) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(token).append('*');
+        }
+        return sb.toString();
+    }
+
+    private static String join(long[] ids) {
+        StringBuilder sb = new StringBuilder();
+        for (long id : ids) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(id);
+        }
+        return sb.toString();
+    }
+
+    private static String normalize(String text) {
+        List<String> words = new ArrayList<String>();
+        for (String word : tokenize(text)) {
+            if (!ARTICLES.contains(word)) {
+                words.add(word);
+            }
+        }
+        return TextUtils.join(" ", words);
+    }
+
+    private static List<String> tokenize(String text) {
+        if (TextUtils.isEmpty(text)) {
+            return Collections.emptyList();
+        }
+
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+        folded = DIACRITICS.matcher(folded).replaceAll("").toLowerCase(Locale.ENGLISH);
+
+        List<String> words = new ArrayList<String>();
+        for (String word : NON_WORD.split(folded)) {
+            if (word.length() > 0) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static String join(String first, String second) {
+        if (TextUtils.isEmpty(first)) {
+            return second;
+        }
+        if (TextUtils.isEmpty(second)) {
+            return first;
+        }
+        return first + " " + second;
+    }
+
+    /**
+     * The best match among the videos sharing a name.
+     */
+    private static final class Match implements Comparable<Match> {
+
+        final String mName;
+        long mId;
+        boolean mHasImage;
+        int mScore;
+
+        Match(long id, String name, boolean hasImage, int score) {
+            mId = id;
+            mName = name;
+            mHasImage = hasImage;
+            mScore = score;
+        }
+
+        /**
+         * Adds another video of the same name. The lowest id with a card image represents them.
+         */
+        void add(long id, boolean hasImage, int score) {
+            if ((hasImage && !mHasImage) || (hasImage == mHasImage && id < mId)) {
+                mId = id;
+                mHasImage = hasImage;
+            }
+            mScore = Math.max(mScore, score);
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            if (mScore != other.mScore) {
+                return other.mScore - mScore;
+            }
+            return String.CASE_INSENSITIVE_ORDER.compare(
+                    mName != null ? mName : "", other.mName != null ? other.mName : "");
+        }
+    }
+
+    /**
+     * The ranked matches of a query. Pass it to {@link #search(String, Result)} along with the
+     * next query to narrow it down as the user keeps typing.
+     */
+    public static final class Result {
+
+        private final List<String> mTokens;
+
+        // one video per name, best first
+        private final long[] mIds;
+
+        // every matching video, for refining
+        private final long[] mMatchedIds;
+
+        private Result(List<String> tokens, long[] ids, long[] matchedIds) {
+            mTokens = tokens;
+            mIds = ids;
+            mMatchedIds = matchedIds;
+        }
+
+        public int size() {
+            return mIds.length;
+        }
+
+        /**
+         * A query refines this one when it has at least as many words and each of the earlier
+         * words extends the word at the same position, so it can only match a subset.
+         */
+        private boolean refines(List<String> tokens) {
+            if (mTokens.isEmpty() || tokens.size() < mTokens.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < mTokens.size(); i++) {
+                if (!tokens.get(i).startsWith(mTokens.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
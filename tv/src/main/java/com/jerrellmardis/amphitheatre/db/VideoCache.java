@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.db;
+
+import android.util.LruCache;
+
+import com.jerrellmardis.amphitheatre.model.Video;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide cache of the videos shown on screen, keyed by id. Screens hand each other a video
+ * id and look the video up here, only falling back to the database when the video isn't cached
+ * (e.g. when a recommendation starts a new process).
+ */
+public final class VideoCache {
+
+    private static final int MAX_SIZE = 500;
+
+    private static final LruCache<Long, Video> sCache = new LruCache<Long, Video>(MAX_SIZE);
+
+    // keys of videos that haven't been saved yet count down from here, so they never clash with
+    // a database id or with the -1 of a missing extra
+    private static final AtomicLong sNextUnsavedKey = new AtomicLong(-2);
+
+    private VideoCache() { }
+
+    /**
+     * Caches a video and returns the key to look it up by: its id, or a temporary negative key
+     * if it has no id yet.
+     */
+    public static long put(Video video) {
+        long key = video.getId() != null ? video.getId() : sNextUnsavedKey.getAndDecrement();
+        sCache.put(key, video);
+        return key;
+    }
+
+    public static Video get(long id) {
+        Video video = sCache.get(id);
+        if (video == null && id >= 0) {
+            video = Video.findById(Video.class, id);
+            if (video != null) {
+                sCache.put(id, video);
+            }
+        }
+        return video;
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.db;
+
+import android.database.Cursor;
+import android.text.TextUtils;
+
+import com.jerrellmardis.amphitheatre.AmphitheatreApplication;
+import com.jerrellmardis.amphitheatre.model.Video;
+import com.jerrellmardis.amphitheatre.model.VideoGroup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Library queries that go beyond Sugar's single table lookups. All values are passed as bound
+ * arguments and every query is backed by one of the indexes in {@link DatabaseSchema}.
+ */
+public final class VideoDao {
+
+    private static final String MOVIES_BY_GENRE =
+            "SELECT V.* FROM VIDEO_GENRE G JOIN VIDEO V ON V.ID = G.VIDEO " +
+            "WHERE G.GENRE = ? AND G.IS_MOVIE = 1 ORDER BY V.NAME COLLATE NOCASE LIMIT %d OFFSET %d";
+
+    // one row per show: the first episode with artwork (or the first episode) and the count
+    private static final String TV_SHOWS_BY_GENRE =
+            "SELECT COALESCE(MIN(CASE WHEN V.CARD_IMAGE_URL <> '' THEN V.ID END), MIN(V.ID)), " +
+            "COUNT(*) FROM VIDEO_GENRE G JOIN VIDEO V ON V.ID = G.VIDEO " +
+            "WHERE G.GENRE = ? AND G.IS_MOVIE = 0 GROUP BY V.NAME " +
+            "ORDER BY V.NAME COLLATE NOCASE LIMIT %d OFFSET %d";
+
+    private static final int MAX_ARGS = 500;
+
+    private static final String EPISODES =
+            "SELECT * FROM VIDEO WHERE NAME = ? AND IS_MOVIE = 0 " +
+            "ORDER BY RELEASE_DAY IS NULL, RELEASE_DAY";
+
+    private static final String LATEST_UNWATCHED_MOVIES =
+            "SELECT * FROM VIDEO WHERE IS_MATCHED = 1 AND IS_MOVIE = 1 AND IS_WATCHED = 0 " +
+            "AND RELEASE_DAY IS NOT NULL AND CARD_IMAGE_URL <> '' AND BACKGROUND_IMAGE_URL <> '' " +
+            "ORDER BY RELEASE_DAY DESC LIMIT %d";
+
+    // one row per show: its most recently aired unwatched episode
+    private static final String LATEST_UNWATCHED_TV_SHOWS =
+            "SELECT *, MAX(RELEASE_DAY) AS LATEST FROM VIDEO " +
+            "WHERE IS_MATCHED = 1 AND IS_MOVIE = 0 AND IS_WATCHED = 0 " +
+            "AND RELEASE_DAY IS NOT NULL AND CARD_IMAGE_URL <> '' AND BACKGROUND_IMAGE_URL <> '' " +
+            "GROUP BY NAME ORDER BY LATEST DESC LIMIT %d";
+
+    private static final String IN_PROGRESS =
+            "SELECT * FROM VIDEO WHERE LAST_PLAYED > 0 AND RESUME_PERCENT > 0 AND IS_MATCHED = 1 " +
+            "AND CARD_IMAGE_URL <> '' AND BACKGROUND_IMAGE_URL <> '' " +
+            "ORDER BY LAST_PLAYED DESC LIMIT %d";
+
+    // an episode's place in its show
+    private static final String EPISODE_POSITION = "(%1$s.SEASON_NUMBER * 10000 + %1$s.EPISODE_NUMBER)";
+
+    // one row per recently played show: its first unwatched episode after the last played one
+    private static final String NEXT_EPISODES =
+            "SELECT V.*, MIN(" + String.format(EPISODE_POSITION, "E") + ") AS NEXT_POSITION " +
+            "FROM VIDEO V JOIN TV_SHOW T ON T.ID = V.TV_SHOW JOIN EPISODE E ON E.ID = T.EPISODE " +
+            "JOIN (SELECT V2.NAME AS NAME, MAX(V2.LAST_PLAYED) AS PLAYED, " +
+            String.format(EPISODE_POSITION, "E2") + " AS POSITION " +
+            "FROM VIDEO V2 JOIN TV_SHOW T2 ON T2.ID = V2.TV_SHOW " +
+            "JOIN EPISODE E2 ON E2.ID = T2.EPISODE " +
+            "WHERE V2.LAST_PLAYED > 0 AND V2.IS_MOVIE = 0 GROUP BY V2.NAME) L ON L.NAME = V.NAME " +
+            "WHERE V.IS_MATCHED = 1 AND V.IS_MOVIE = 0 AND V.IS_WATCHED = 0 " +
+            "AND V.CARD_IMAGE_URL <> '' AND V.BACKGROUND_IMAGE_URL <> '' " +
+            "AND " + String.format(EPISODE_POSITION, "E") + " > L.POSITION " +
+            "GROUP BY V.NAME ORDER BY L.PLAYED DESC LIMIT %d";
+
+    private static final String UPDATE_PLAYED =
+            "UPDATE VIDEO SET LAST_PLAYED = ?, IS_WATCHED = 1 WHERE VIDEO_URL = ?";
+
+    // a finished video is marked watched in the same statement, never unmarked
+    private static final String UPDATE_RESUME_PERCENT =
+            "UPDATE VIDEO SET LAST_PLAYED = ?, RESUME_PERCENT = ?, IS_WATCHED = MAX(IS_WATCHED, ?) "
+                    + "WHERE VIDEO_URL = ?";
+
+    // resuming this close to the end counts as having finished the video
+    private static final int FINISHED_PERCENT = 95;
+
+    private static final String COUNT_MOVIES_IN_SOURCE =
+            "SELECT COUNT(*) FROM VIDEO WHERE SOURCE_ID = ? AND IS_MATCHED = 1 AND IS_MOVIE = 1";
+
+    private static final String MOVIES_IN_SOURCE =
+            "SELECT * FROM VIDEO WHERE SOURCE_ID = ? AND IS_MATCHED = 1 AND IS_MOVIE = 1 " +
+            "ORDER BY NAME COLLATE NOCASE LIMIT %d OFFSET %d";
+
+    private static final String RECENTLY_ADDED =
+            "SELECT * FROM VIDEO WHERE IS_MATCHED = 1 AND IS_MOVIE = ? " +
+            "ORDER BY CREATED DESC LIMIT %d";
+
+    // one row per show, like TV_SHOWS_BY_GENRE
+    private static final String TV_SHOWS =
+            "SELECT COALESCE(MIN(CASE WHEN CARD_IMAGE_URL <> '' THEN ID END), MIN(ID)), " +
+            "COUNT(*) FROM VIDEO WHERE IS_MATCHED = 1 AND IS_MOVIE = 0 AND ID <= ? GROUP BY NAME";
+
+    private static final String GENRES =
+            "SELECT DISTINCT GENRE FROM VIDEO_GENRE WHERE IS_MOVIE = ? ORDER BY GENRE";
+
+    private VideoDao() { }
+
+    public static boolean isLibraryEmpty() {
+        Cursor cursor = AmphitheatreApplication.getSQLiteDatabase().rawQuery(
+                "SELECT EXISTS (SELECT 1 FROM VIDEO)", null);
+        try {
+            return !cursor.moveToFirst() || cursor.getInt(0) == 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the highest video id, or 0 if the library is empty.
+     */
+    public static long getMaxId() {
+        Cursor cursor = AmphitheatreApplication.getSQLiteDatabase().rawQuery(
+                "SELECT MAX(ID) FROM VIDEO", null);
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns the number of matched movies found in a source.
+     */
+    public static int countMoviesInSource(long sourceId) {
+        Cursor cursor = AmphitheatreApplication.getSQLiteDatabase().rawQuery(
+                COUNT_MOVIES_IN_SOURCE, new String[] { String.valueOf(sourceId) });
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Returns one page of the matched movies found in a source, ordered by name.
+     */
+    public static List<Video> getMoviesInSource(long sourceId, int offset, int limit) {
+        return Video.findWithQuery(Video.class, String.format(MOVIES_IN_SOURCE, limit, offset),
+                String.valueOf(sourceId));
+    }
+
+    /**
+     * Returns the most recently added matched movies or TV episodes.
+     */
+    public static List<Video> getRecentlyAdded(boolean isMovie, int limit) {
+        return Video.findWithQuery(Video.class, String.format(RECENTLY_ADDED, limit),
+                isMovie ? "1" : "0");
+    }
+
+    public static List<Video> getUnmatched() {
+        return getUnmatched(Long.MAX_VALUE);
+    }
+
+    /**
+     * Returns the unmatched videos whose id is at most maxId, i.e. that were saved by the time
+     * {@link #getMaxId()} returned it.
+     */
+    public static List<Video> getUnmatched(long maxId) {
+        return Video.find(Video.class, "is_matched = 0 AND id <= ?", String.valueOf(maxId));
+    }
+
+    /**
+     * Returns a group for every matched TV show, holding the number of episodes found.
+     */
+    public static List<VideoGroup> getTvShows() {
+        return getTvShows(Long.MAX_VALUE);
+    }
+
+    /**
+     * Like {@link #getTvShows()}, counting only the episodes whose id is at most maxId.
+     */
+    public static List<VideoGroup> getTvShows(long maxId) {
+        return getVideoGroups(TV_SHOWS, String.valueOf(maxId));
+    }
+
+    public static List<String> getGenres(boolean isMovie) {
+        List<String> genres = new ArrayList<String>();
+        Cursor cursor = AmphitheatreApplication.getSQLiteDatabase().rawQuery(
+                GENRES, new String[] { isMovie ? "1" : "0" });
+        try {
+            while (cursor.moveToNext()) {
+                genres.add(cursor.getString(0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return genres;
+    }
+
+    /**
+     * Returns every episode of a show, oldest first. Episodes without an air date come last.
+     */
+    public static List<Video> getEpisodes(String name) {
+        return Video.findWithQuery(Video.class, EPISODES, name);
+    }
+
+    /**
+     * Returns the most recently released unwatched movies that have artwork.
+     */
+    public static List<Video> getLatestUnwatchedMovies(int limit) {
+        return Video.findWithQuery(Video.class, String.format(LATEST_UNWATCHED_MOVIES, limit));
+    }
+
+    /**
+     * Returns the most recently aired unwatched episode with artwork of each show, most recent
+     * show first.
+     */
+    public static List<Video> getLatestUnwatchedTvShows(int limit) {
+        return Video.findWithQuery(Video.class, String.format(LATEST_UNWATCHED_TV_SHOWS, limit));
+    }
+
+    /**
+     * Returns the videos that were started but not finished, most recently played first.
+     */
+    public static List<Video> getInProgress(int limit) {
+        return Video.findWithQuery(Video.class, String.format(IN_PROGRESS, limit));
+    }
+
+    /**
+     * Returns the episode to watch next of each show that has been played, ordered by season and
+     * episode number: the first unwatched one after the most recently played episode. Most
+     * recently played show first.
+     */
+    public static List<Video> getNextEpisodes(int limit) {
+        return Video.findWithQuery(Video.class, String.format(NEXT_EPISODES, limit));
+    }
+
+    /**
+     * Records that playback of a file started.
+     */
+    public static void setPlayed(String videoUrl) {
+        AmphitheatreApplication.getSQLiteDatabase().execSQL(UPDATE_PLAYED,
+                new Object[] { System.currentTimeMillis(), videoUrl });
+    }
+
+    /**
+     * Records where in a file playback was resumed. Near the end the video counts as finished
+     * and the resume position is cleared. Both are written in a single UPDATE.
+     */
+    public static void setResumePercent(String videoUrl, int percent) {
+        boolean isFinished = percent >= FINISHED_PERCENT;
+        if (isFinished) {
+            percent = 0;
+        }
+
+        AmphitheatreApplication.getSQLiteDatabase().execSQL(UPDATE_RESUME_PERCENT,
+                new Object[] { System.currentTimeMillis(), Math.max(0, percent),
+                        isFinished ? 1 : 0, videoUrl });
+    }
+
+    public static Page<Video> getMoviesByGenre(String genre, int offset, int limit) {
+        List<Video> videos = Video.findWithQuery(Video.class,
+                String.format(MOVIES_BY_GENRE, limit, offset), genre);
+        return new Page<Video>(videos, videos.size());
+    }
+
+    public static Page<VideoGroup> getTvShowsByGenre(String genre, int offset, int limit) {
+        return readVideoGroups(String.format(TV_SHOWS_BY_GENRE, limit, offset), genre);
+    }
+
+    /**
+     * Runs a query returning (representative video id, number of videos) rows.
+     */
+    private static List<VideoGroup> getVideoGroups(String sql, String... args) {
+        return readVideoGroups(sql, args).getItems();
+    }
+
+    private static Page<VideoGroup> readVideoGroups(String sql, String... args) {
+        List<Long> ids = new ArrayList<Long>();
+        List<Integer> counts = new ArrayList<Integer>();
+
+        Cursor cursor = AmphitheatreApplication.getSQLiteDatabase().rawQuery(sql, args);
+        try {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+                counts.add(cursor.getInt(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        if (ids.isEmpty()) {
+            return new Page<VideoGroup>(Collections.<VideoGroup>emptyList(), 0);
+        }
+
+        Map<Long, Video> videos = getVideosById(ids);
+
+        // a video deleted since the query ran leaves its row without an item
+        List<VideoGroup> groups = new ArrayList<VideoGroup>(ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            Video video = videos.get(ids.get(i));
+            if (video != null) {
+                groups.add(new VideoGroup(video, counts.get(i)));
+            }
+        }
+
+        return new Page<VideoGroup>(groups, ids.size());
+    }
+
+    static Map<Long, Video> getVideosById(List<Long> ids) {
+        Map<Long, Video> videoMap = new HashMap<Long, Video>(ids.size());
+
+        // stay below SQLite's limit on bound arguments
+        for (int start = 0; start < ids.size(); start += MAX_ARGS) {
+            List<Long> chunk = ids.subList(start, Math.min(start + MAX_ARGS, ids.size()));
+
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = String.valueOf(chunk.get(i));
+            }
+
+            String placeholders = TextUtils.join(",", Collections.nCopies(args.length, "?"));
+            for (Video video : Video.find(Video.class, "id IN (" + placeholders + ")", args)) {
+                videoMap.put(video.getId(), video);
+            }
+        }
+        return videoMap;
+    }
+
+    /**
+     * One page of a paged query: its items and the number of rows the query returned, which
+     * can be more than the items when some rows didn't resolve to one. Paging stops once a page
+     * reads fewer rows than its limit.
+     */
+    public static final class Page<T> {
+
+        private final List<T> mItems;
+        private final int mRowCount;
+
+        Page(List<T> items, int rowCount) {
+            mItems = items;
+            mRowCount = rowCount;
+        }
+
+        public List<T> getItems() {
+            return mItems;
+        }
+
+        public int getRowCount() {
+            return mRowCount;
+        }
+    }
+}
@@ -24,8 +24,8 @@ import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.graphics.drawable.Drawable;
+import android.os.AsyncTask;
 import android.os.Bundle;
-import android.os.Handler;
 import android.preference.PreferenceManager;
 import android.support.v17.leanback.app.BackgroundManager;
 import android.support.v17.leanback.widget.ArrayObjectAdapter;
@@ -36,7 +36,6 @@ import android.support.v17.leanback.widget.ObjectAdapter;
 import android.support.v17.leanback.widget.OnItemClickedListener;
 import android.support.v17.leanback.widget.OnItemSelectedListener;
 import android.support.v17.leanback.widget.Row;
-import android.text.TextUtils;
 import android.util.DisplayMetrics;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -47,65 +46,69 @@ import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.activity.DetailsActivity;
 import com.jerrellmardis.amphitheatre.activity.GridViewActivity;
 import com.jerrellmardis.amphitheatre.activity.SearchActivity;
+import com.jerrellmardis.amphitheatre.db.QueryExecutor;
+import com.jerrellmardis.amphitheatre.db.VideoDao;
 import com.jerrellmardis.amphitheatre.model.GridGenre;
 import com.jerrellmardis.amphitheatre.model.Source;
 import com.jerrellmardis.amphitheatre.model.Video;
 import com.jerrellmardis.amphitheatre.model.VideoGroup;
 import com.jerrellmardis.amphitheatre.service.RecommendationsService;
 import com.jerrellmardis.amphitheatre.task.GetFilesTask;
+import com.jerrellmardis.amphitheatre.util.ArtworkCache;
 import com.jerrellmardis.amphitheatre.util.BlurTransform;
 import com.jerrellmardis.amphitheatre.util.Constants;
+import com.jerrellmardis.amphitheatre.util.Debouncer;
 import com.jerrellmardis.amphitheatre.util.Enums;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
 import com.jerrellmardis.amphitheatre.util.PicassoBackgroundManagerTarget;
-import com.jerrellmardis.amphitheatre.util.SecurePreferences;
+import com.jerrellmardis.amphitheatre.util.SmbCredentials;
+import com.jerrellmardis.amphitheatre.util.VideoUpdateBus;
 import com.jerrellmardis.amphitheatre.util.VideoUtils;
+import com.jerrellmardis.amphitheatre.widget.BrowseModel;
 import com.jerrellmardis.amphitheatre.widget.CardPresenter;
 import com.jerrellmardis.amphitheatre.widget.GridItemPresenter;
+import com.jerrellmardis.amphitheatre.widget.ImageRequestScheduler;
+import com.jerrellmardis.amphitheatre.widget.PagedVideoAdapter;
 import com.jerrellmardis.amphitheatre.widget.SortedObjectAdapter;
 import com.jerrellmardis.amphitheatre.widget.TvShowsCardPresenter;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.RequestCreator;
 import com.squareup.picasso.Target;
-import com.squareup.picasso.Transformation;
 
-import java.io.Serializable;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.TreeSet;
 
 import static android.view.View.OnClickListener;
 
 public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragment
         implements AddSourceDialogFragment.OnClickListener, CustomizeDialogFragment.OnSaveListener{
 
-    private final Handler mHandler = new Handler();
+    private static final long BACKGROUND_UPDATE_DELAY_MS = 300;
 
-    private Transformation mBlurTransformation;
     private Drawable mDefaultBackground;
     private Target mBackgroundTarget;
     private DisplayMetrics mMetrics;
-    private Timer mBackgroundTimer;
+    private Debouncer mBackgroundDebouncer;
     private String mBackgroundImageUrl;
     private ArrayObjectAdapter mAdapter;
     private CardPresenter mCardPresenter;
     private TvShowsCardPresenter mTvShowsCardPresenter;
+    private BrowseModel mBrowseModel;
+    private LoadLibraryTask mLoadTask;
 
-    private BroadcastReceiver videoUpdateReceiver = new BroadcastReceiver() {
+    // scan results that arrived while mLoadTask was building a new model, replayed onto it
+    private final List<Video> mQueuedVideos = new ArrayList<Video>();
+    private final List<Source> mQueuedSources = new ArrayList<Source>();
+
+    private VideoUpdateBus.Listener videoUpdateListener = new VideoUpdateBus.Listener() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            Bundle bundle = intent.getExtras();
-            if (bundle != null) {
-                Serializable obj = bundle.getSerializable(Constants.VIDEO);
-                if (obj instanceof Video) {
-                    addVideoToUi((Video) bundle.getSerializable(Constants.VIDEO));
-                }
+        public void onVideosAdded(List<Video> videos) {
+            if (mLoadTask != null) {
+                mQueuedVideos.addAll(videos);
             }
+            mBrowseModel.addVideos(videos);
         }
     };
 
@@ -124,7 +127,9 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
         mCardPresenter = new CardPresenter(getActivity());
         mTvShowsCardPresenter = new TvShowsCardPresenter(getActivity());
         mAdapter = new ArrayObjectAdapter(new ListRowPresenter());
-        addSettingsHeader();
+        mBrowseModel = new BrowseModel(getActivity(), mAdapter, mCardPresenter,
+                mTvShowsCardPresenter, Collections.<Source>emptyList());
+        addSettingsHeader(mAdapter);
         setAdapter(mAdapter);
         return v;
     }
@@ -132,26 +137,18 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
-        mBlurTransformation = new BlurTransform(getActivity());
         prepareBackgroundManager();
         setupUIElements();
         setupEventListeners();
 
-
-        if (Video.count(Video.class, null, null) == 0) {
-            showAddSourceDialog();
-        } else {
-            loadVideos();
-        }
-
+        loadVideos();
     }
 
     @Override
     public void onStart() {
         super.onStart();
 
-        getActivity().registerReceiver(videoUpdateReceiver,
-                new IntentFilter(Constants.VIDEO_UPDATE_ACTION));
+        VideoUpdateBus.getInstance().register(videoUpdateListener);
         getActivity().registerReceiver(libraryUpdateReceiver,
                 new IntentFilter(Constants.LIBRARY_UPDATED_ACTION));
 
@@ -161,11 +158,7 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
 
     @Override
     public void onStop() {
-        try {
-            getActivity().unregisterReceiver(videoUpdateReceiver);
-        } catch (IllegalArgumentException e) {
-            // do nothing
-        }
+        VideoUpdateBus.getInstance().unregister(videoUpdateListener);
         try {
             getActivity().unregisterReceiver(libraryUpdateReceiver);
         } catch (IllegalArgumentException e) {
@@ -174,6 +167,17 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
         super.onStop();
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        if (mBackgroundDebouncer != null) {
+            mBackgroundDebouncer.cancel();
+        }
+        if (mBrowseModel != null) {
+            mBrowseModel.release();
+        }
+    }
+
     @Override
     public void onAddClicked(CharSequence user, CharSequence password,
                              final CharSequence path, boolean isMovie) {
@@ -185,9 +189,13 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
         source.setSource(path.toString());
         source.setType(isMovie ? Source.Type.MOVIE.name() : Source.Type.TV_SHOW.name());
         source.save();
+        mBrowseModel.addSource(source);
+        if (mLoadTask != null) {
+            mQueuedSources.add(source);
+        }
 
-        new GetFilesTask(getActivity(), user.toString(), password.toString(), path.toString(),
-                isMovie, new GetFilesTask.Callback() {
+        new GetFilesTask(getActivity(), user.toString(), password.toString(), source,
+                new GetFilesTask.Callback() {
 
                     @Override
                     public void success() {
@@ -196,9 +204,7 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
                         Toast.makeText(getActivity(), getString(R.string.update_complete),
                                 Toast.LENGTH_SHORT).show();
 
-                        rebuildSubCategories();
-
-                        reloadAdapters();
+                        refresh();
 
                         updateRecommendations();
                     }
@@ -212,9 +218,7 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
                     }
                 }).execute();
 
-        SecurePreferences securePreferences = new SecurePreferences(getActivity().getApplicationContext());
-        securePreferences.edit().putString(Constants.PREFS_USER_KEY, user.toString()).apply();
-        securePreferences.edit().putString(Constants.PREFS_PASSWORD_KEY, password.toString()).apply();
+        SmbCredentials.save(getActivity(), user.toString(), password.toString());
     }
 
     private void reloadAdapters() {
@@ -224,21 +228,22 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
             if (objectAdapter instanceof ArrayObjectAdapter) {
                 ArrayObjectAdapter arrayObjectAdapter = ((ArrayObjectAdapter) objectAdapter);
                 arrayObjectAdapter.notifyArrayItemRangeChanged(0, arrayObjectAdapter.size());
+            } else if (objectAdapter instanceof SortedObjectAdapter) {
+                SortedObjectAdapter sortedObjectAdapter = ((SortedObjectAdapter) objectAdapter);
+                sortedObjectAdapter.notifyArrayItemRangeChanged(0, sortedObjectAdapter.size());
+            } else if (objectAdapter instanceof PagedVideoAdapter) {
+                PagedVideoAdapter pagedVideoAdapter = ((PagedVideoAdapter) objectAdapter);
+                pagedVideoAdapter.notifyArrayItemRangeChanged(0, pagedVideoAdapter.size());
             }
         }
     }
 
     private void loadVideos() {
-        List<Video> videos = Source.listAll(Video.class);
-        if (videos != null && !videos.isEmpty()) {
-            for (Video video : videos) {
-                addVideoToUi(video);
-            }
-
-            rebuildSubCategories();
-
-            reloadAdapters();
+        if (mLoadTask != null) {
+            mLoadTask.cancel(false);
         }
+        mLoadTask = new LoadLibraryTask();
+        mLoadTask.executeOnExecutor(QueryExecutor.get());
     }
 
     private void prepareBackgroundManager() {
@@ -251,11 +256,21 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
         mMetrics = new DisplayMetrics();
         getActivity().getWindowManager().getDefaultDisplay().getMetrics(mMetrics);
 
-        Picasso.with(getActivity())
+        mBackgroundDebouncer = new Debouncer(BACKGROUND_UPDATE_DELAY_MS, new Runnable() {
+            @Override
+            public void run() {
+                if (mBackgroundImageUrl != null) {
+                    updateBackground(mBackgroundImageUrl);
+                } else {
+                    clearBackground();
+                }
+            }
+        });
+
+        ArtworkCache.getBackgroundPicasso(getActivity())
                 .load(R.drawable.amphitheatre)
                 .resize(mMetrics.widthPixels, mMetrics.heightPixels)
                 .centerCrop()
-                .skipMemoryCache()
                 .into(mBackgroundTarget);
     }
 
@@ -281,159 +296,30 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
         if (mBackgroundImageUrl != null) {
             mBackgroundImageUrl = null;
         }
-        startBackgroundTimer();
-    }
-
-    private void addVideoToUi(Video video) {
-        Comparator<Video> videoNameComparator = new Comparator<Video>() {
-            @Override
-            public int compare(Video o1, Video o2) {
-                if (o2.getName() == null) {
-                    return (o1.getName() == null) ? 0 : -1;
-                }
-                if (o1.getName() == null) {
-                    return 1;
-                }
-                return o1.getName().toLowerCase().compareTo(o2.getName().toLowerCase());
-            }
-        };
-
-        Comparator<VideoGroup> videoGroupNameComparator = new Comparator<VideoGroup>() {
-            @Override
-            public int compare(VideoGroup o1, VideoGroup o2) {
-                if (o2.getVideo().getName() == null) {
-                    return (o1.getVideo().getName() == null) ? 0 : -1;
-                }
-                if (o1.getVideo().getName() == null) {
-                    return 1;
-                }
-                return o1.getVideo().getName().toLowerCase().compareTo(o2.getVideo().getName().toLowerCase());
-            }
-        };
-
-        if (!video.isMatched()) {
-            ListRow row = findListRow(getString(R.string.unmatched));
-
-            // if found add this video
-            // if not, create a new row and add it
-            if (row != null) {
-                ((SortedObjectAdapter) row.getAdapter()).add(video);
-            } else {
-                SortedObjectAdapter listRowAdapter = new SortedObjectAdapter(
-                        videoNameComparator, mCardPresenter);
-                listRowAdapter.add(video);
-
-                HeaderItem header = new HeaderItem(0, getString(R.string.unmatched), null);
-                int index = mAdapter.size() > 1 ? mAdapter.size() - 1 : 0;
-                mAdapter.add(index, new ListRow(header, listRowAdapter));
-            }
-        } else if (video.isMovie()) {
-            List<Source> sources = Source.listAll(Source.class);
-
-            for (Source source : sources) {
-                // find the video's "source" and use it as a category
-                if (video.getVideoUrl().contains(source.toString())) {
-                    String[] sections = source.toString().split("/");
-                    String category = String.format(getString(R.string.all_category_placeholder),
-                            sections[sections.length - 1]);
-
-                    ListRow row = findListRow(category);
-
-                    // if found add this video
-                    // if not, create a new row and add it
-                    if (row != null) {
-                        ((SortedObjectAdapter) row.getAdapter()).add(video);
-                    } else {
-                        SortedObjectAdapter listRowAdapter = new SortedObjectAdapter(
-                                videoNameComparator, mCardPresenter);
-                        listRowAdapter.add(video);
-
-                        HeaderItem header = new HeaderItem(0, category, null);
-                        mAdapter.add(0, new ListRow(header, listRowAdapter));
-                    }
-
-                    break;
-                }
-            }
-        } else {
-            ListRow row = findListRow(getString(R.string.all_tv_shows));
-
-            // if found add this video
-            // if not, create a new row and add it
-            if (row != null) {
-                boolean found = false;
-
-                // find the video group and increment the episode count
-                for (int i = 0; i < row.getAdapter().size(); i++) {
-                    VideoGroup group = (VideoGroup) row.getAdapter().get(i);
-
-                    if (group.getVideo().getName().equals(video.getName())) {
-                        if (TextUtils.isEmpty(group.getVideo().getCardImageUrl())) {
-                            group.getVideo().setCardImageUrl(video.getCardImageUrl());
-                        }
-
-                        group.increment();
-                        found = true;
-                        break;
-                    }
-                }
-
-                // if not found, then add the VideoGroup to the row
-                if (!found) {
-                    ((SortedObjectAdapter) row.getAdapter()).add(new VideoGroup(video));
-                }
-            } else {
-                SortedObjectAdapter listRowAdapter = new SortedObjectAdapter(
-                        videoGroupNameComparator, mTvShowsCardPresenter);
-                listRowAdapter.add(new VideoGroup(video));
-
-                HeaderItem header = new HeaderItem(0, getString(R.string.all_tv_shows), null);
-                mAdapter.add(0, new ListRow(header, listRowAdapter));
-            }
-        }
+        scheduleBackgroundUpdate();
     }
 
-    private void rebuildSubCategories() {
-        List<Video> videos = Video.listAll(Video.class);
-        Collections.sort(videos, new Comparator<Video>() {
-            @Override
-            public int compare(Video o1, Video o2) {
-                return Long.valueOf(o2.getCreated()).compareTo(o1.getCreated());
-            }
-        });
-
+    private void rebuildSubCategories(BrowseModel model) {
         // get top 15 movies and TV shows
         final int max = 15;
-        List<Video> movies = new ArrayList<Video>(max);
-        List<Video> tvShows = new ArrayList<Video>(max);
-
-        for (Video video : videos) {
-            if (movies.size() == max && tvShows.size() == max) {
-                break;
-            }
-
-            if (video.isMatched() && video.isMovie() && movies.size() <= max) {
-                movies.add(video);
-            } else if (video.isMatched() && !video.isMovie() && tvShows.size() <= max) {
-                tvShows.add(video);
-            }
-        }
+        List<Video> movies = VideoDao.getRecentlyAdded(true, max);
+        List<Video> tvShows = VideoDao.getRecentlyAdded(false, max);
 
-        ListRow unMatchedRow = findListRow(getString(R.string.unmatched));
+        ListRow unMatchedRow = model.findRow(getString(R.string.unmatched));
 
         // recently added movies
-        addRecentlyAddedMovies(movies, unMatchedRow);
+        addRecentlyAddedMovies(model, movies, unMatchedRow);
 
         // recently added TV shows
-        addRecentlyAddedTvShows(tvShows, unMatchedRow);
+        addRecentlyAddedTvShows(model, tvShows, unMatchedRow);
 
         // add genres for movies & TV Shows
-        addGenres(videos, unMatchedRow);
+        addGenres(model, unMatchedRow);
     }
 
-    private void addRecentlyAddedTvShows(List<Video> tvShows, ListRow unMatchedRow) {
+    private void addRecentlyAddedTvShows(BrowseModel model, List<Video> tvShows, ListRow unMatchedRow) {
         if (!tvShows.isEmpty()) {
-            ListRow row = findListRow(getString(R.string.recently_added_tv_episodes));
+            ListRow row = model.findRow(getString(R.string.recently_added_tv_episodes));
             if (row != null) {
                 ((ArrayObjectAdapter) row.getAdapter()).clear();
                 ((ArrayObjectAdapter) row.getAdapter()).addAll(0, tvShows);
@@ -442,16 +328,16 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
                 listRowAdapter.addAll(0, tvShows);
 
                 HeaderItem header = new HeaderItem(0, getString(R.string.recently_added_tv_episodes), null);
-                int index = mAdapter.size() > 1 ? mAdapter.size() - 1 : 0;
+                int index = model.getRowsAdapter().size() > 1 ? model.getRowsAdapter().size() - 1 : 0;
                 if (unMatchedRow != null) index -= 1;
-                mAdapter.add(index, new ListRow(header, listRowAdapter));
+                model.addRow(index, new ListRow(header, listRowAdapter));
             }
         }
     }
 
-    private void addRecentlyAddedMovies(List<Video> movies, ListRow unMatchedRow) {
+    private void addRecentlyAddedMovies(BrowseModel model, List<Video> movies, ListRow unMatchedRow) {
         if (!movies.isEmpty()) {
-            ListRow row = findListRow(getString(R.string.recently_added_movies));
+            ListRow row = model.findRow(getString(R.string.recently_added_movies));
             if (row != null) {
                 ((ArrayObjectAdapter) row.getAdapter()).clear();
                 ((ArrayObjectAdapter) row.getAdapter()).addAll(0, movies);
@@ -460,42 +346,16 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
                 listRowAdapter.addAll(0, movies);
 
                 HeaderItem header = new HeaderItem(0, getString(R.string.recently_added_movies), null);
-                int index = mAdapter.size() > 1 ? mAdapter.size() - 1 : 0;
+                int index = model.getRowsAdapter().size() > 1 ? model.getRowsAdapter().size() - 1 : 0;
                 if (unMatchedRow != null) index -= 1;
-                mAdapter.add(index, new ListRow(header, listRowAdapter));
+                model.addRow(index, new ListRow(header, listRowAdapter));
             }
         }
     }
 
-    private void addGenres(List<Video> videos, ListRow unMatchedRow) {
-        Set<String> movieGenres = new TreeSet<String>();
-        Set<String> tvShowGenres = new TreeSet<String>();
-
-        for (Video video : videos) {
-            if (video.isMovie()) {
-                if (video.getMovie() != null && video.getMovie().getFlattenedGenres() != null) {
-                    String[] gs = video.getMovie().getFlattenedGenres().split(",");
-                    if (gs.length > 0) {
-                        for (String genre : gs) {
-                            if (genre.trim().length() > 0) {
-                                movieGenres.add(genre);
-                            }
-                        }
-                    }
-                }
-            } else {
-                if (video.getTvShow() != null && video.getTvShow().getFlattenedGenres() != null) {
-                    String[] gs = video.getTvShow().getFlattenedGenres().split(",");
-                    if (gs.length > 0) {
-                        for (String genre : gs) {
-                            if (genre.trim().length() > 0) {
-                                tvShowGenres.add(genre);
-                            }
-                        }
-                    }
-                }
-            }
-        }
+    private void addGenres(BrowseModel model, ListRow unMatchedRow) {
+        List<String> movieGenres = VideoDao.getGenres(true);
+        List<String> tvShowGenres = VideoDao.getGenres(false);
 
         if (!movieGenres.isEmpty()) {
             HeaderItem gridHeader = new HeaderItem(0, getString(R.string.movies_genre), null);
@@ -503,9 +363,9 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
             for (String genre : movieGenres) {
                 gridRowAdapter.add(new GridGenre(genre, Source.Type.MOVIE));
             }
-            int index = mAdapter.size() > 1 ? mAdapter.size() - 1 : 0;
+            int index = model.getRowsAdapter().size() > 1 ? model.getRowsAdapter().size() - 1 : 0;
             if (unMatchedRow != null) index -= 1;
-            mAdapter.add(index, new ListRow(gridHeader, gridRowAdapter));
+            model.addRow(index, new ListRow(gridHeader, gridRowAdapter));
         }
 
         if (!tvShowGenres.isEmpty()) {
@@ -514,72 +374,59 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
             for (String genre : tvShowGenres) {
                 gridRowAdapter.add(new GridGenre(genre, Source.Type.TV_SHOW));
             }
-            int index = mAdapter.size() > 1 ? mAdapter.size() - 1 : 0;
+            int index = model.getRowsAdapter().size() > 1 ? model.getRowsAdapter().size() - 1 : 0;
             if (unMatchedRow != null) index -= 1;
-            mAdapter.add(index, new ListRow(gridHeader, gridRowAdapter));
+            model.addRow(index, new ListRow(gridHeader, gridRowAdapter));
         }
     }
 
     private void refresh() {
-        mAdapter = new ArrayObjectAdapter(new ListRowPresenter());
-        addSettingsHeader();
         loadVideos();
-        setAdapter(mAdapter);
     }
 
-    private void addSettingsHeader() {
+    private void addSettingsHeader(ArrayObjectAdapter adapter) {
         HeaderItem gridHeader = new HeaderItem(0, getString(R.string.settings), null);
         ArrayObjectAdapter gridRowAdapter = new ArrayObjectAdapter(new GridItemPresenter(getActivity()));
         gridRowAdapter.add(getString(R.string.add_source));
         gridRowAdapter.add(getString(R.string.customization));
-        mAdapter.add(new ListRow(gridHeader, gridRowAdapter));
-    }
-
-    private ListRow findListRow(String headerName) {
-        for (int i = 0; i < mAdapter.size(); i++) {
-            ListRow row = (ListRow) mAdapter.get(i);
-            if (headerName.equals(row.getHeaderItem().getName())) {
-                return row;
-            }
-        }
-
-        return null;
+        adapter.add(new ListRow(gridHeader, gridRowAdapter));
     }
 
     private void updateRecommendations() {
-        getActivity().startService(new Intent(getActivity(), RecommendationsService.class));
+        RecommendationsService.update(getActivity());
     }
 
     private void updateBackground(String url) {
         SharedPreferences sharedPrefs = PreferenceManager
                 .getDefaultSharedPreferences(getActivity().getApplicationContext());
 
-        RequestCreator requestCreator = Picasso.with(getActivity())
-                .load(url)
-                .placeholder(R.drawable.placeholder)
-                .resize(mMetrics.widthPixels, mMetrics.heightPixels)
-                .centerCrop()
-                .skipMemoryCache();
+        Picasso picasso = ArtworkCache.getBackgroundPicasso(getActivity());
+        RequestCreator requestCreator;
 
         switch(Enums.BlurState.valueOf(sharedPrefs.getString(Constants.BACKGROUND_BLUR, ""))) {
             case ON:
-                requestCreator = requestCreator.transform(mBlurTransformation);
+                requestCreator = BlurTransform.load(picasso, getActivity(), url);
+                break;
+            default:
+                requestCreator = picasso.load(url);
                 break;
         }
 
-        requestCreator.into(mBackgroundTarget);
+        requestCreator
+                .placeholder(R.drawable.placeholder)
+                .resize(mMetrics.widthPixels, mMetrics.heightPixels)
+                .centerCrop()
+                .into(mBackgroundTarget);
     }
 
     private void clearBackground() {
         BackgroundManager.getInstance(getActivity()).setDrawable(mDefaultBackground);
     }
 
-    private void startBackgroundTimer() {
-        if (null != mBackgroundTimer) {
-            mBackgroundTimer.cancel();
-        }
-        mBackgroundTimer = new Timer();
-        mBackgroundTimer.schedule(new UpdateBackgroundTask(), 300);
+    private void scheduleBackgroundUpdate() {
+        // drop the background of the previous selection if it is still loading
+        ArtworkCache.getBackgroundPicasso(getActivity()).cancelRequest(mBackgroundTarget);
+        mBackgroundDebouncer.trigger();
     }
 
     private OnClickListener getSearchClickedListener() {
@@ -596,17 +443,26 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
         return new OnItemSelectedListener() {
             @Override
             public void onItemSelected(Object item, Row row) {
+                ImageRequestScheduler.getInstance(getActivity()).onSelectionChanged();
+
+                if (item == PagedVideoAdapter.PLACEHOLDER) {
+                    return;
+                }
+
                 if (item instanceof Video) {
                     try {
-                        mBackgroundImageUrl = ((Video) item).getBackgroundImageUrl();
-                        startBackgroundTimer();
+                        mBackgroundImageUrl = ImageUtils.getBackdropUrl(getActivity(),
+                                ((Video) item).getBackgroundImageUrl(), mMetrics.widthPixels);
+                        scheduleBackgroundUpdate();
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
                 } else if (item instanceof VideoGroup) {
                     try {
-                        mBackgroundImageUrl = ((VideoGroup) item).getVideo().getBackgroundImageUrl();
-                        startBackgroundTimer();
+                        mBackgroundImageUrl = ImageUtils.getBackdropUrl(getActivity(),
+                                ((VideoGroup) item).getVideo().getBackgroundImageUrl(),
+                                mMetrics.widthPixels);
+                        scheduleBackgroundUpdate();
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
@@ -632,17 +488,16 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
         return new OnItemClickedListener() {
             @Override
             public void onItemClicked(Object item, Row row) {
+                if (item == PagedVideoAdapter.PLACEHOLDER) {
+                    return;
+                }
+
                 if (item instanceof Video || item instanceof VideoGroup) {
                     if (item instanceof VideoGroup) {
-                        Intent intent = new Intent(getActivity(), DetailsActivity.class);
-                        intent.putExtra(Constants.IS_VIDEO, false);
-                        intent.putExtra(Constants.VIDEO_GROUP, (VideoGroup) item);
-                        startActivity(intent);
+                        startActivity(DetailsActivity.newIntent(getActivity(),
+                                ((VideoGroup) item).getVideo(), false));
                     } else if (((Video) item).isMatched()) {
-                        Intent intent = new Intent(getActivity(), DetailsActivity.class);
-                        intent.putExtra(Constants.IS_VIDEO, true);
-                        intent.putExtra(Constants.VIDEO, (Video) item);
-                        startActivity(intent);
+                        startActivity(DetailsActivity.newIntent(getActivity(), (Video) item, true));
                     } else {
                         VideoUtils.playVideo(new WeakReference<Activity>(getActivity()), (Video) item);
                     }
@@ -684,19 +539,91 @@ public class BrowseFragment extends android.support.v17.leanback.app.BrowseFragm
         reloadAdapters();
     }
 
-    private class UpdateBackgroundTask extends TimerTask {
+    /**
+     * Queries the library once and builds every row into a new adapter off the main thread.
+     * The finished adapter replaces the current one in a single swap.
+     */
+    private class LoadLibraryTask extends AsyncTask<Void, Void, BrowseModel> {
+
+        private boolean mIsLibraryEmpty;
+
+        // every video up to this id was read into the model
+        private long mMaxVideoId;
+
         @Override
-        public void run() {
-            mHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    if (mBackgroundImageUrl != null) {
-                        updateBackground(mBackgroundImageUrl);
-                    } else {
-                        clearBackground();
+        protected BrowseModel doInBackground(Void... params) {
+            Activity activity = getActivity();
+            if (activity == null) return null;
+
+            // decrypt the credentials now rather than when the first video is played
+            SmbCredentials.getAuth(activity);
+
+            // the rows that get replayed only read videos up to mMaxVideoId, so a video saved
+            // by a running scan is either in the model or newer than it, without holding the
+            // database's connection for the whole read
+            try {
+                mMaxVideoId = VideoDao.getMaxId();
+                mIsLibraryEmpty = VideoDao.isLibraryEmpty();
+
+                ArrayObjectAdapter adapter = new ArrayObjectAdapter(new ListRowPresenter());
+                addSettingsHeader(adapter);
+
+                List<Source> sources = Source.listAll(Source.class);
+                BrowseModel model = new BrowseModel(activity, adapter, mCardPresenter,
+                        mTvShowsCardPresenter, sources);
+
+                if (!mIsLibraryEmpty) {
+                    // movie rows page through the database; only their first page is read here
+                    for (Source source : sources) {
+                        if (Source.Type.MOVIE.name().equals(source.getType())) {
+                            model.addMovieRow(source.getId(),
+                                    PagedVideoAdapter.load(source.getId(), mCardPresenter));
+                        }
                     }
+
+                    model.addTvShowGroups(VideoDao.getTvShows(mMaxVideoId));
+                    model.addVideos(VideoDao.getUnmatched(mMaxVideoId));
+
+                    rebuildSubCategories(model);
+                }
+
+                return model;
+            } catch (IllegalStateException e) {
+                // the fragment was detached while loading
+                return null;
+            }
+        }
+
+        @Override
+        protected void onPostExecute(BrowseModel model) {
+            mLoadTask = null;
+            List<Video> missedVideos = new ArrayList<Video>();
+            for (Video video : mQueuedVideos) {
+                if (video.getId() != null && video.getId() > mMaxVideoId) {
+                    missedVideos.add(video);
                 }
-            });
+            }
+            List<Source> missedSources = new ArrayList<Source>(mQueuedSources);
+            mQueuedVideos.clear();
+            mQueuedSources.clear();
+
+            if (model == null || getActivity() == null) return;
+
+            for (Source source : missedSources) {
+                model.addSource(source);
+            }
+            model.addVideos(missedVideos);
+
+            if (mBrowseModel != null) {
+                mBrowseModel.release();
+            }
+            mBrowseModel = model;
+            mAdapter = model.getRowsAdapter();
+            setAdapter(mAdapter);
+
+            if (mIsLibraryEmpty) {
+                showAddSourceDialog();
+            }
         }
     }
 }
\ No newline at end of file
@@ -17,7 +17,6 @@
 package com.jerrellmardis.amphitheatre.fragment;
 
 import android.app.Activity;
-import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.support.v17.leanback.widget.ArrayObjectAdapter;
@@ -26,46 +25,61 @@ import android.support.v17.leanback.widget.ListRow;
 import android.support.v17.leanback.widget.ListRowPresenter;
 import android.support.v17.leanback.widget.ObjectAdapter;
 import android.support.v17.leanback.widget.OnItemClickedListener;
+import android.support.v17.leanback.widget.OnItemSelectedListener;
 import android.support.v17.leanback.widget.Row;
 import android.text.TextUtils;
 
 import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.activity.DetailsActivity;
-import com.jerrellmardis.amphitheatre.model.Source;
+import com.jerrellmardis.amphitheatre.db.QueryExecutor;
+import com.jerrellmardis.amphitheatre.db.SearchDao;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.jerrellmardis.amphitheatre.util.Constants;
+import com.jerrellmardis.amphitheatre.task.SearchPageTask;
 import com.jerrellmardis.amphitheatre.util.VideoUtils;
 import com.jerrellmardis.amphitheatre.widget.CardPresenter;
+import com.jerrellmardis.amphitheatre.widget.ImageRequestScheduler;
 
 import java.lang.ref.WeakReference;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 public class SearchFragment extends android.support.v17.leanback.app.SearchFragment
         implements android.support.v17.leanback.app.SearchFragment.SearchResultProvider {
 
-    private static final int SEARCH_DELAY_MS = 300;
+    private static final int SEARCH_DELAY_MS = 100;
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_DISTANCE = 10;
 
-    private List<Video> allVideos;
     private ArrayObjectAdapter mListRowAdapter;
     private ArrayObjectAdapter mRowsAdapter;
     private Handler mHandler = new Handler();
     private SearchRunnable mDelayedLoad;
 
+    private String mQuery;
+    private int mQueryVersion;
+    private SearchDao.Result mResult;
+    private SearchDao.Result mLastResult;
+    private int mNextOffset;
+    private boolean mIsLoading;
+    private boolean mIsLastPageLoaded;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        allVideos = Source.listAll(Video.class);
-
         mListRowAdapter = new ArrayObjectAdapter(new CardPresenter(getActivity()));
         mRowsAdapter = new ArrayObjectAdapter(new ListRowPresenter());
         setSearchResultProvider(this);
         setOnItemClickedListener(getDefaultItemClickedListener());
+        setOnItemSelectedListener(getDefaultItemSelectedListener());
         mDelayedLoad = new SearchRunnable();
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mHandler.removeCallbacks(mDelayedLoad);
+    }
+
     @Override
     public ObjectAdapter getResultsAdapter() {
         return mRowsAdapter;
@@ -73,24 +87,25 @@ public class SearchFragment extends android.support.v17.leanback.app.SearchFragm
 
     @Override
     public boolean onQueryTextChange(String newQuery) {
-        mRowsAdapter.clear();
-        if (!TextUtils.isEmpty(newQuery)) {
-            mDelayedLoad.setSearchQuery(newQuery);
-            mHandler.removeCallbacks(mDelayedLoad);
-            mHandler.postDelayed(mDelayedLoad, SEARCH_DELAY_MS);
-        }
+        search(newQuery, SEARCH_DELAY_MS);
         return true;
     }
 
     @Override
     public boolean onQueryTextSubmit(String query) {
+        search(query, 0);
+        return true;
+    }
+
+    private void search(String query, int delay) {
         mRowsAdapter.clear();
+        mQuery = null;
+        mQueryVersion++;
+        mHandler.removeCallbacks(mDelayedLoad);
         if (!TextUtils.isEmpty(query)) {
             mDelayedLoad.setSearchQuery(query);
-            mHandler.removeCallbacks(mDelayedLoad);
-            mHandler.postDelayed(mDelayedLoad, SEARCH_DELAY_MS);
+            mHandler.postDelayed(mDelayedLoad, delay);
         }
-        return true;
     }
 
     private OnItemClickedListener getDefaultItemClickedListener() {
@@ -105,48 +120,87 @@ public class SearchFragment extends android.support.v17.leanback.app.SearchFragm
                         return;
                     }
 
-                    Intent intent = new Intent(getActivity(), DetailsActivity.class);
-                    intent.putExtra(Constants.VIDEO, video);
-                    startActivity(intent);
+                    startActivity(DetailsActivity.newIntent(getActivity(), video, true));
                 }
             }
         };
     }
 
-    private class SearchRunnable implements Runnable {
+    private OnItemSelectedListener getDefaultItemSelectedListener() {
+        return new OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(Object item, Row row) {
+                ImageRequestScheduler.getInstance(getActivity()).onSelectionChanged();
 
-        private volatile String mSearchQuery;
+                // start loading the next page before the user reaches the end of the row
+                if (item != null && mListRowAdapter.indexOf(item) >= mListRowAdapter.size() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        };
+    }
 
-        @Override
-        public void run() {
-            loadRows(mSearchQuery);
+    private void loadNextPage() {
+        if (mQuery == null || mIsLoading || mIsLastPageLoaded) {
+            return;
         }
 
-        public void setSearchQuery(String query) {
-            mSearchQuery = query;
-        }
-
-        private void loadRows(String query) {
-            mListRowAdapter.clear();
+        mIsLoading = true;
+        final int version = mQueryVersion;
+        SearchPageTask.Callback callback = new SearchPageTask.Callback() {
+            @Override
+            public void onPageLoaded(SearchDao.Result result, List<Video> videos, int offset,
+                                     int limit) {
+                // still narrows down the next query, even if this one is stale
+                mLastResult = result;
+
+                // the query changed while the page was loading
+                if (version != mQueryVersion || !isAdded()) {
+                    return;
+                }
 
-            Map<String, Video> searchMap = new HashMap<String, Video>();
+                mResult = result;
+                mNextOffset = offset + limit;
+                mIsLoading = false;
+                mIsLastPageLoaded = mNextOffset >= result.size();
 
-            for (Video video : allVideos) {
-                if (video == null || video.getName() == null) {
-                    continue;
+                if (offset == 0) {
+                    mListRowAdapter.clear();
+                    HeaderItem header = new HeaderItem(0, getResources().getString(R.string.search_results), null);
+                    mRowsAdapter.add(new ListRow(header, mListRowAdapter));
                 }
 
-                if (video.getName().toLowerCase().contains(query.toLowerCase())) {
-                    if (!searchMap.containsKey(video.getName())) {
-                        searchMap.put(video.getName(), video);
-                    }
-                }
+                mListRowAdapter.addAll(mListRowAdapter.size(), videos);
             }
+        };
+
+        if (mResult == null) {
+            new SearchPageTask(mQuery, mLastResult, PAGE_SIZE, callback)
+                    .executeOnExecutor(QueryExecutor.get());
+        } else {
+            new SearchPageTask(mResult, mNextOffset, PAGE_SIZE, callback)
+                    .executeOnExecutor(QueryExecutor.get());
+        }
+    }
+
+    private class SearchRunnable implements Runnable {
 
-            mListRowAdapter.addAll(0, searchMap.values());
+        private String mSearchQuery;
+
+        @Override
+        public void run() {
+            mQuery = mSearchQuery;
+            mQueryVersion++;
+            mResult = null;
+            mNextOffset = 0;
+            mIsLoading = false;
+            mIsLastPageLoaded = false;
+            mListRowAdapter.clear();
+            loadNextPage();
+        }
 
-            HeaderItem header = new HeaderItem(0, getResources().getString(R.string.search_results), null);
-            mRowsAdapter.add(new ListRow(header, mListRowAdapter));
+        public void setSearchQuery(String query) {
+            mSearchQuery = query;
         }
     }
-}
\ No newline at end of file
+}
@@ -1,123 +1,100 @@
 package com.jerrellmardis.amphitheatre.fragment;
 
-import android.content.Intent;
 import android.graphics.drawable.Drawable;
 import android.os.Bundle;
-import android.os.Handler;
 import android.support.v17.leanback.app.BackgroundManager;
 import android.support.v17.leanback.widget.ArrayObjectAdapter;
 import android.support.v17.leanback.widget.OnItemClickedListener;
 import android.support.v17.leanback.widget.OnItemSelectedListener;
 import android.support.v17.leanback.widget.Row;
 import android.support.v17.leanback.widget.VerticalGridPresenter;
-import android.text.TextUtils;
 import android.util.DisplayMetrics;
 
 import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.activity.DetailsActivity;
+import com.jerrellmardis.amphitheatre.db.QueryExecutor;
 import com.jerrellmardis.amphitheatre.model.Video;
 import com.jerrellmardis.amphitheatre.model.VideoGroup;
+import com.jerrellmardis.amphitheatre.task.GenrePageTask;
+import com.jerrellmardis.amphitheatre.util.ArtworkCache;
 import com.jerrellmardis.amphitheatre.util.BlurTransform;
 import com.jerrellmardis.amphitheatre.util.Constants;
+import com.jerrellmardis.amphitheatre.util.Debouncer;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
 import com.jerrellmardis.amphitheatre.util.PicassoBackgroundManagerTarget;
 import com.jerrellmardis.amphitheatre.widget.CardPresenter;
+import com.jerrellmardis.amphitheatre.widget.ImageRequestScheduler;
 import com.jerrellmardis.amphitheatre.widget.TvShowsCardPresenter;
-import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Target;
-import com.squareup.picasso.Transformation;
 
 import java.util.List;
-import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.TreeMap;
 
 public class VerticalGridFragment extends android.support.v17.leanback.app.VerticalGridFragment {
 
     private static final int NUM_COLUMNS = 5;
-
-    private final Handler mHandler = new Handler();
-
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_DISTANCE = 2 * NUM_COLUMNS;
+    private static final long BACKGROUND_UPDATE_DELAY_MS = 300;
+
+    private ArrayObjectAdapter mAdapter;
+    private String mGenre;
+    private boolean mIsMovie;
+    private boolean mIsLoading;
+    private boolean mIsLastPageLoaded;
+    private int mNextOffset;
+    private GenrePageTask mPageTask;
     private String mBackgroundImageUrl;
     private Drawable mDefaultBackground;
-    private Timer mBackgroundTimer;
-    private Transformation mBlurTransformation;
+    private Debouncer mBackgroundDebouncer;
     private Target mBackgroundTarget;
     private DisplayMetrics mMetrics;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        mBlurTransformation = new BlurTransform(getActivity());
         prepareBackgroundManager();
         setupFragment();
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        mBackgroundDebouncer.cancel();
+
+        if (mPageTask != null) {
+            mPageTask.cancel(false);
+        }
+    }
+
     private void setupFragment() {
         VerticalGridPresenter gridPresenter = new VerticalGridPresenter();
 
-        String selectedGenre = getActivity().getIntent().getStringExtra(Constants.GENRE);
-        boolean isMovie = getActivity().getIntent().getBooleanExtra(Constants.IS_VIDEO, true);
-        ArrayObjectAdapter adapter;
+        mGenre = getActivity().getIntent().getStringExtra(Constants.GENRE);
+        mIsMovie = getActivity().getIntent().getBooleanExtra(Constants.IS_VIDEO, true);
 
-        if (isMovie) {
+        if (mIsMovie) {
             gridPresenter.setNumberOfColumns(NUM_COLUMNS);
-            setGridPresenter(gridPresenter);
-            adapter = new ArrayObjectAdapter(new CardPresenter(getActivity()));
-
-            String sql = "SELECT V.* FROM MOVIE M, VIDEO V WHERE V.MOVIE = M.ID " +
-                    "AND M.FLATTENED_GENRES LIKE '%" + selectedGenre + "%' ORDER BY NAME";
-            List<Video> videos = Video.findWithQuery(Video.class, sql);
-
-            setTitle(selectedGenre);
-
-            adapter.addAll(0, videos);
+            mAdapter = new ArrayObjectAdapter(new CardPresenter(getActivity()));
         } else {
             gridPresenter.setNumberOfColumns(NUM_COLUMNS - 2);
-            setGridPresenter(gridPresenter);
-            adapter = new ArrayObjectAdapter(new TvShowsCardPresenter(getActivity()));
-
-            String sql = "SELECT V.* FROM TV_SHOW T, VIDEO V WHERE V.TV_SHOW = T.ID " +
-                    "AND T.FLATTENED_GENRES LIKE '%" + selectedGenre + "%' ORDER BY NAME";
-            List<Video> tvshows = Video.findWithQuery(Video.class, sql);
-
-            setTitle(selectedGenre);
+            mAdapter = new ArrayObjectAdapter(new TvShowsCardPresenter(getActivity()));
+        }
 
-            Map<String, VideoGroup> tvShowsMap = new TreeMap<String, VideoGroup>();
-            for (Video video : tvshows) {
-                if (tvShowsMap.containsKey(video.getName())) {
-                    VideoGroup group = tvShowsMap.get(video.getName());
-                    if (TextUtils.isEmpty(group.getVideo().getCardImageUrl())) {
-                        group.getVideo().setCardImageUrl(video.getCardImageUrl());
-                    }
+        setGridPresenter(gridPresenter);
+        setTitle(mGenre);
 
-                    group.increment();
-                } else {
-                    VideoGroup vg = new VideoGroup(video);
-                    tvShowsMap.put(video.getName(), vg);
-                }
-            }
+        loadNextPage();
 
-            if (tvShowsMap.size() > 0) {
-                adapter.addAll(0, tvShowsMap.values());
-            }
-        }
-
-        setAdapter(adapter);
+        setAdapter(mAdapter);
 
         setOnItemClickedListener(new OnItemClickedListener() {
             @Override
             public void onItemClicked(Object item, Row row) {
                 if (item instanceof VideoGroup) {
-                    Intent intent = new Intent(getActivity(), DetailsActivity.class);
-                    intent.putExtra(Constants.IS_VIDEO, false);
-                    intent.putExtra(Constants.VIDEO_GROUP, (VideoGroup) item);
-                    startActivity(intent);
+                    startActivity(DetailsActivity.newIntent(getActivity(),
+                            ((VideoGroup) item).getVideo(), false));
                 } else if (((Video) item).isMatched()) {
-                    Intent intent = new Intent(getActivity(), DetailsActivity.class);
-                    intent.putExtra(Constants.IS_VIDEO, true);
-                    intent.putExtra(Constants.VIDEO, (Video) item);
-                    startActivity(intent);
+                    startActivity(DetailsActivity.newIntent(getActivity(), (Video) item, true));
                 }
             }
         });
@@ -125,17 +102,27 @@ public class VerticalGridFragment extends android.support.v17.leanback.app.Verti
         setOnItemSelectedListener(new OnItemSelectedListener() {
             @Override
             public void onItemSelected(Object item, Row row) {
+                ImageRequestScheduler.getInstance(getActivity()).onSelectionChanged();
+
+                // start loading the next page before the user reaches the end of the grid
+                if (mAdapter.indexOf(item) >= mAdapter.size() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+
                 if (item instanceof Video) {
                     try {
-                        mBackgroundImageUrl = ((Video) item).getBackgroundImageUrl();
-                        startBackgroundTimer();
+                        mBackgroundImageUrl = ImageUtils.getBackdropUrl(getActivity(),
+                                ((Video) item).getBackgroundImageUrl(), mMetrics.widthPixels);
+                        scheduleBackgroundUpdate();
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
                 } else if (item instanceof VideoGroup) {
                     try {
-                        mBackgroundImageUrl = ((VideoGroup) item).getVideo().getBackgroundImageUrl();
-                        startBackgroundTimer();
+                        mBackgroundImageUrl = ImageUtils.getBackdropUrl(getActivity(),
+                                ((VideoGroup) item).getVideo().getBackgroundImageUrl(),
+                                mMetrics.widthPixels);
+                        scheduleBackgroundUpdate();
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
@@ -144,6 +131,31 @@ public class VerticalGridFragment extends android.support.v17.leanback.app.Verti
         });
     }
 
+    private void loadNextPage() {
+        if (mIsLoading || mIsLastPageLoaded) {
+            return;
+        }
+
+        mIsLoading = true;
+        mPageTask = new GenrePageTask(mGenre, mIsMovie, mNextOffset, PAGE_SIZE,
+                new GenrePageTask.Callback() {
+            @Override
+            public void onPageLoaded(List<?> items, int rowCount, int offset, int limit) {
+                mIsLoading = false;
+                mPageTask = null;
+
+                // the offset counts query rows, which can outnumber the items of the page
+                mNextOffset = offset + limit;
+                mIsLastPageLoaded = rowCount < limit;
+
+                if (!items.isEmpty()) {
+                    mAdapter.addAll(mAdapter.size(), items);
+                }
+            }
+        });
+        mPageTask.executeOnExecutor(QueryExecutor.get());
+    }
+
     private void prepareBackgroundManager() {
         BackgroundManager backgroundManager = BackgroundManager.getInstance(getActivity());
         backgroundManager.attach(getActivity().getWindow());
@@ -154,50 +166,39 @@ public class VerticalGridFragment extends android.support.v17.leanback.app.Verti
         mMetrics = new DisplayMetrics();
         getActivity().getWindowManager().getDefaultDisplay().getMetrics(mMetrics);
 
-        Picasso.with(getActivity())
+        mBackgroundDebouncer = new Debouncer(BACKGROUND_UPDATE_DELAY_MS, new Runnable() {
+            @Override
+            public void run() {
+                if (mBackgroundImageUrl != null) {
+                    updateBackground(mBackgroundImageUrl);
+                } else {
+                    clearBackground();
+                }
+            }
+        });
+
+        ArtworkCache.getBackgroundPicasso(getActivity())
                 .load(R.drawable.amphitheatre)
                 .resize(mMetrics.widthPixels, mMetrics.heightPixels)
                 .centerCrop()
-                .skipMemoryCache()
                 .into(mBackgroundTarget);
     }
 
-    private void startBackgroundTimer() {
-        if (null != mBackgroundTimer) {
-            mBackgroundTimer.cancel();
-        }
-        mBackgroundTimer = new Timer();
-        mBackgroundTimer.schedule(new UpdateBackgroundTask(), 300);
+    private void scheduleBackgroundUpdate() {
+        // drop the background of the previous selection if it is still loading
+        ArtworkCache.getBackgroundPicasso(getActivity()).cancelRequest(mBackgroundTarget);
+        mBackgroundDebouncer.trigger();
     }
 
     private void updateBackground(String url) {
-        Picasso.with(getActivity())
-                .load(url)
-                .transform(mBlurTransformation)
+        BlurTransform.load(ArtworkCache.getBackgroundPicasso(getActivity()), getActivity(), url)
                 .placeholder(R.drawable.placeholder)
                 .resize(mMetrics.widthPixels, mMetrics.heightPixels)
                 .centerCrop()
-                .skipMemoryCache()
                 .into(mBackgroundTarget);
     }
 
     private void clearBackground() {
         BackgroundManager.getInstance(getActivity()).setDrawable(mDefaultBackground);
     }
-
-    private class UpdateBackgroundTask extends TimerTask {
-        @Override
-        public void run() {
-            mHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    if (mBackgroundImageUrl != null) {
-                        updateBackground(mBackgroundImageUrl);
-                    } else {
-                        clearBackground();
-                    }
-                }
-            });
-        }
-    }
 }
\ No newline at end of file
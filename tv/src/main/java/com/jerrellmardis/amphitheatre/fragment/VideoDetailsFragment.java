@@ -16,44 +16,38 @@
 
 package com.jerrellmardis.amphitheatre.fragment;
 
-import android.content.Intent;
 import android.os.Bundle;
 import android.support.v17.leanback.app.BackgroundManager;
 import android.support.v17.leanback.app.DetailsFragment;
 import android.support.v17.leanback.widget.ArrayObjectAdapter;
 import android.support.v17.leanback.widget.OnItemClickedListener;
 import android.support.v17.leanback.widget.Row;
-import android.text.TextUtils;
 import android.util.DisplayMetrics;
 
 import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.activity.DetailsActivity;
+import com.jerrellmardis.amphitheatre.db.RelatedMoviesDao;
+import com.jerrellmardis.amphitheatre.db.VideoCache;
+import com.jerrellmardis.amphitheatre.db.VideoDao;
 import com.jerrellmardis.amphitheatre.listeners.RowBuilderTaskListener;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.jerrellmardis.amphitheatre.model.VideoGroup;
 import com.jerrellmardis.amphitheatre.task.DetailRowBuilderTask;
+import com.jerrellmardis.amphitheatre.util.ArtworkCache;
 import com.jerrellmardis.amphitheatre.util.BlurTransform;
 import com.jerrellmardis.amphitheatre.util.Constants;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
 import com.jerrellmardis.amphitheatre.util.PicassoBackgroundManagerTarget;
-import com.orm.query.Condition;
-import com.orm.query.Select;
-import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Target;
-import com.squareup.picasso.Transformation;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
 
 public class VideoDetailsFragment extends DetailsFragment implements RowBuilderTaskListener {
 
-    private Transformation mBlurTransformation;
     private Target mBackgroundTarget;
     private DisplayMetrics mMetrics;
 
@@ -61,8 +55,6 @@ public class VideoDetailsFragment extends DetailsFragment implements RowBuilderT
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
-        mBlurTransformation = new BlurTransform(getActivity());
-
         BackgroundManager backgroundManager = BackgroundManager.getInstance(getActivity());
         backgroundManager.attach(getActivity().getWindow());
         mBackgroundTarget = new PicassoBackgroundManagerTarget(backgroundManager);
@@ -71,15 +63,21 @@ public class VideoDetailsFragment extends DetailsFragment implements RowBuilderT
         getActivity().getWindowManager().getDefaultDisplay().getMetrics(mMetrics);
 
         boolean isVideo = getActivity().getIntent().getBooleanExtra(Constants.IS_VIDEO, true);
-        Video video;
+        Video video = VideoCache.get(getActivity().getIntent().getLongExtra(Constants.VIDEO_ID, -1));
 
-        if (isVideo) {
-            video = (Video) getActivity().getIntent().getSerializableExtra(Constants.VIDEO);
+        if (video == null) {
+            // the video was removed from the library
+            getActivity().finish();
+            return;
+        }
 
+        if (isVideo) {
             if (video.getTvShow() != null && video.getTvShow().getEpisode() != null) {
-                updateBackground(video.getTvShow().getEpisode().getStillPath());
+                updateBackground(ImageUtils.getStillUrl(getActivity(),
+                        video.getTvShow().getEpisode().getStillPath(), mMetrics.widthPixels));
             } else {
-                updateBackground(video.getBackgroundImageUrl());
+                updateBackground(ImageUtils.getBackdropUrl(getActivity(),
+                        video.getBackgroundImageUrl(), mMetrics.widthPixels));
             }
 
             Map<String, List<Video>> relatedVideos = Collections.emptyMap();
@@ -92,9 +90,8 @@ public class VideoDetailsFragment extends DetailsFragment implements RowBuilderT
 
             new DetailRowBuilderTask(getActivity(), relatedVideos, true, this).execute(video);
         } else {
-            VideoGroup videoGroup = (VideoGroup) getActivity().getIntent().getSerializableExtra(Constants.VIDEO_GROUP);
-            video = videoGroup.getVideo();
-            updateBackground(video.getBackgroundImageUrl());
+            updateBackground(ImageUtils.getBackdropUrl(getActivity(),
+                    video.getBackgroundImageUrl(), mMetrics.widthPixels));
             new DetailRowBuilderTask(getActivity(), getRelatedTvShows(video), false, this).execute(video);
         }
 
@@ -106,56 +103,20 @@ public class VideoDetailsFragment extends DetailsFragment implements RowBuilderT
             @Override
             public void onItemClicked(Object item, Row row) {
                 if (item instanceof Video) {
-                    Intent intent = new Intent(getActivity(), DetailsActivity.class);
-                    intent.putExtra(Constants.IS_VIDEO, true);
-                    intent.putExtra(Constants.VIDEO, (Video) item);
-                    startActivity(intent);
+                    startActivity(DetailsActivity.newIntent(getActivity(), (Video) item, true));
                 }
             }
         };
     }
 
     private Map<String, List<Video>> getRelatedMovies(Video video) {
-        List<Video> videos = Select
-                .from(Video.class)
-                .where(Condition.prop("is_matched").eq(1),
-                        Condition.prop("is_movie").eq(1))
-                .list();
-
         Map<String, List<Video>> relatedVideos = new HashMap<String, List<Video>>();
-        String key = getString(R.string.related_videos);
-        relatedVideos.put(key, new ArrayList<Video>());
-
-        if (video.getMovie() != null && !TextUtils.isEmpty(video.getMovie().getFlattenedGenres())) {
-            String[] genresArray = video.getMovie().getFlattenedGenres().split(",");
-            Set<String> genres = new HashSet<String>(Arrays.asList(genresArray));
-
-            for (Video vid : videos) {
-                if (vid.getMovie() != null &&
-                        !TextUtils.isEmpty(vid.getMovie().getFlattenedGenres())) {
-
-                    Set<String> intersection = new HashSet<String>(Arrays.asList(
-                            vid.getMovie().getFlattenedGenres().split(",")));
-                    intersection.retainAll(genres);
-
-                    if (intersection.size() == genresArray.length &&
-                            !video.getMovie().getTitle().equals(vid.getMovie().getTitle())) {
-
-                        relatedVideos.get(key).add(vid);
-                    }
-                }
-            }
-        }
-
+        relatedVideos.put(getString(R.string.related_videos), RelatedMoviesDao.getRelatedMovies(video));
         return relatedVideos;
     }
 
     private Map<String, List<Video>> getRelatedTvShows(Video video) {
-        List<Video> videos = Select
-                .from(Video.class)
-                .where(Condition.prop("name").eq(video.getName()),
-                        Condition.prop("is_movie").eq(0))
-                .list();
+        List<Video> videos = VideoDao.getEpisodes(video.getName());
 
         Map<String, List<Video>> relatedVideos = new TreeMap<String, List<Video>>(Collections.reverseOrder());
 
@@ -191,13 +152,10 @@ public class VideoDetailsFragment extends DetailsFragment implements RowBuilderT
     }
 
     private void updateBackground(String url) {
-        Picasso.with(getActivity())
-                .load(url)
-                .transform(mBlurTransformation)
+        BlurTransform.load(ArtworkCache.getBackgroundPicasso(getActivity()), getActivity(), url)
                 .placeholder(R.drawable.placeholder)
                 .resize(mMetrics.widthPixels, mMetrics.heightPixels)
                 .centerCrop()
-                .skipMemoryCache()
                 .into(mBackgroundTarget);
     }
 
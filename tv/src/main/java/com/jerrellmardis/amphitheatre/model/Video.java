@@ -18,6 +18,7 @@ package com.jerrellmardis.amphitheatre.model;
 
 import com.jerrellmardis.amphitheatre.model.tmdb.Movie;
 import com.jerrellmardis.amphitheatre.model.tmdb.TvShow;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
 import com.orm.SugarRecord;
 
 import java.io.Serializable;
@@ -29,6 +30,8 @@ public class Video extends SugarRecord<Video> implements Serializable {
 
     private Movie movie;
     private TvShow tvShow;
+    private Long sourceId;
+    private Long releaseDay;
     private long created;
     private String name;
     private String cardImageUrl;
@@ -38,6 +41,8 @@ public class Video extends SugarRecord<Video> implements Serializable {
     private boolean isMatched;
     private boolean isMovie;
     private boolean isWatched;
+    private int resumePercent;
+    private long lastPlayed;
 
     public String getName() {
         return name;
@@ -47,6 +52,9 @@ public class Video extends SugarRecord<Video> implements Serializable {
         this.name = name;
     }
 
+    /**
+     * TMDb path of the poster, e.g. "/abc.jpg". See {@link ImageUtils#getPosterUrl}.
+     */
     public String getCardImageUrl() {
         return cardImageUrl;
     }
@@ -55,6 +63,9 @@ public class Video extends SugarRecord<Video> implements Serializable {
         this.cardImageUrl = cardImageUrl;
     }
 
+    /**
+     * TMDb path of the backdrop, e.g. "/abc.jpg". See {@link ImageUtils#getBackdropUrl}.
+     */
     public String getBackgroundImageUrl() {
         return backgroundImageUrl;
     }
@@ -119,6 +130,25 @@ public class Video extends SugarRecord<Video> implements Serializable {
         this.created = created;
     }
 
+    public Long getSourceId() {
+        return sourceId;
+    }
+
+    public void setSourceId(Long sourceId) {
+        this.sourceId = sourceId;
+    }
+
+    /**
+     * Days since the epoch of the movie's release date or the episode's air date.
+     */
+    public Long getReleaseDay() {
+        return releaseDay;
+    }
+
+    public void setReleaseDay(Long releaseDay) {
+        this.releaseDay = releaseDay;
+    }
+
     public boolean isWatched() {
         return isWatched;
     }
@@ -126,4 +156,27 @@ public class Video extends SugarRecord<Video> implements Serializable {
     public void setWatched(boolean isWatched) {
         this.isWatched = isWatched;
     }
+
+    /**
+     * How far into the file playback was last resumed, in percent, or 0 if the video hasn't been
+     * started or was played to the end.
+     */
+    public int getResumePercent() {
+        return resumePercent;
+    }
+
+    public void setResumePercent(int resumePercent) {
+        this.resumePercent = resumePercent;
+    }
+
+    /**
+     * When the video was last played, in milliseconds since the epoch, or 0 if never.
+     */
+    public long getLastPlayed() {
+        return lastPlayed;
+    }
+
+    public void setLastPlayed(long lastPlayed) {
+        this.lastPlayed = lastPlayed;
+    }
 }
\ No newline at end of file
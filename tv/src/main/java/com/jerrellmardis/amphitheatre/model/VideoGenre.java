@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.model;
+
+import com.orm.SugarRecord;
+
+/**
+ * Join table between {@link Video} and the genres of its Movie or TV show. One row is stored per
+ * video and genre so genre lookups can use an index instead of scanning flattened genre strings.
+ */
+public class VideoGenre extends SugarRecord<VideoGenre> {
+
+    private Video video;
+    private String genre;
+    private boolean isMovie;
+
+    public VideoGenre() { }
+
+    public VideoGenre(Video video, String genre) {
+        this.video = video;
+        this.genre = genre;
+        this.isMovie = video.isMovie();
+    }
+
+    public Video getVideo() {
+        return video;
+    }
+
+    public void setVideo(Video video) {
+        this.video = video;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public void setGenre(String genre) {
+        this.genre = genre;
+    }
+
+    public boolean isMovie() {
+        return isMovie;
+    }
+
+    public void setIsMovie(boolean isMovie) {
+        this.isMovie = isMovie;
+    }
+}
@@ -30,6 +30,11 @@ public class VideoGroup implements Serializable {
         mVideo = video;
     }
 
+    public VideoGroup(Video video, int numOfVideos) {
+        mVideo = video;
+        this.numOfVideos = numOfVideos;
+    }
+
     public Video getVideo() {
         return mVideo;
     }
@@ -115,4 +115,18 @@ public class Episode extends SugarRecord<Episode> implements Serializable {
     public void setAdditionalProperty(String name, Object value) {
         this.additionalProperties.put(name, value);
     }
+
+    public static Episode copy(Episode episode) {
+        Episode clone = new Episode();
+        clone.airDate = episode.getAirDate();
+        clone.episodeNumber = episode.getEpisodeNumber();
+        clone.name = episode.getName();
+        clone.overview = episode.getOverview();
+        clone.stillPath = episode.getStillPath();
+        clone.voteAverage = episode.getVoteAverage();
+        clone.voteCount = episode.getVoteCount();
+        clone.tmdbId = episode.getTmdbId();
+        clone.seasonNumber = episode.getSeasonNumber();
+        return clone;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.service;
+
+import android.app.AlarmManager;
+import android.content.Context;
+import android.util.Log;
+
+import com.jerrellmardis.amphitheatre.model.Source;
+import com.jerrellmardis.amphitheatre.util.VideoUtils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+import jcifs.smb.SmbFile;
+
+/**
+ * Finds the directories of a source that changed since its last scan, so a library update only
+ * lists and reconciles those instead of crawling the whole share.
+ *
+ * The last modified time of every directory of a source is saved after each scan. Adding,
+ * removing or renaming a file updates the time of its directory, so the next check only has to
+ * read one time per directory and list the ones whose time moved. Not every server keeps
+ * directory times reliably, so each source is crawled in full again once a day.
+ *
+ * A check doesn't save the new times itself. The caller saves them with {@link #save(Changes)}
+ * once the changes are in the library, so changes that couldn't be applied are found again by
+ * the next check.
+ */
+final class LibraryChangeWatcher {
+
+    private static final String TAG = "LibraryChangeWatcher";
+
+    private static final String DIRECTORY = "library_snapshots";
+    private static final String FILE_PREFIX = "source_";
+    private static final long FULL_SCAN_INTERVAL_MS = AlarmManager.INTERVAL_DAY;
+
+    /**
+     * What changed in one source.
+     */
+    static final class Changes {
+
+        // every video file of the listed directories, by path
+        final Map<String, SmbFile> mFiles = new HashMap<String, SmbFile>();
+
+        // directories whose files were listed
+        final Set<String> mListedDirs = new HashSet<String>();
+
+        // directories that are gone, along with everything below them
+        final List<String> mRemovedDirs = new ArrayList<String>();
+
+        boolean mIsFullScan;
+
+        // the directory times after the check, saved by save(Changes)
+        private long mSourceId;
+        private Snapshot mSnapshot;
+
+        boolean isEmpty() {
+            return mListedDirs.isEmpty() && mRemovedDirs.isEmpty();
+        }
+
+        /**
+         * Returns whether the check saw the directory of a file, i.e. whether the file is gone
+         * if it isn't in {@link #mFiles}.
+         */
+        boolean covers(String path) {
+            if (mIsFullScan) {
+                return true;
+            }
+
+            for (String dir : mRemovedDirs) {
+                if (path.startsWith(dir)) {
+                    return true;
+                }
+            }
+
+            return mListedDirs.contains(path.substring(0, path.lastIndexOf('/') + 1));
+        }
+    }
+
+    private final File mSnapshotDir;
+    private final NtlmPasswordAuthentication mAuth;
+
+    LibraryChangeWatcher(Context context, NtlmPasswordAuthentication auth) {
+        mSnapshotDir = new File(context.getFilesDir(), DIRECTORY);
+        mAuth = auth;
+    }
+
+    /**
+     * Compares the directories of a source against its last snapshot. Blocks on the network, so
+     * it must not be called from the main thread.
+     *
+     * @param path the smb:// URL of the source, ending with a slash
+     * @throws IOException if the share can't be read
+     */
+    Changes check(Source source, String path) throws IOException {
+        File file = getSnapshotFile(source.getId());
+        long now = System.currentTimeMillis();
+
+        Snapshot snapshot = read(file);
+        Changes changes = new Changes();
+        changes.mSourceId = source.getId();
+
+        if (snapshot == null || now - snapshot.mFullScanTime >= FULL_SCAN_INTERVAL_MS) {
+            snapshot = new Snapshot(now);
+            changes.mIsFullScan = true;
+            list(new SmbFile(path, mAuth), snapshot, changes, true);
+        } else {
+            // parents sort before their children, so a removed tree is dropped before its
+            // subdirectories are looked at
+            for (String dir : new ArrayList<String>(snapshot.mTimes.keySet())) {
+                Long time = snapshot.mTimes.get(dir);
+                if (time == null) {
+                    continue;
+                }
+
+                SmbFile smbDir = new SmbFile(dir, mAuth);
+                if (!smbDir.exists()) {
+                    changes.mRemovedDirs.add(dir);
+                    removeTree(snapshot, dir);
+                } else if (smbDir.lastModified() != time) {
+                    list(smbDir, snapshot, changes, false);
+                }
+            }
+        }
+
+        changes.mSnapshot = snapshot;
+        return changes;
+    }
+
+    /**
+     * Saves the directory times found by a check, once its changes have been applied.
+     */
+    void save(Changes changes) {
+        if (!changes.isEmpty()) {
+            write(getSnapshotFile(changes.mSourceId), changes.mSnapshot);
+        }
+    }
+
+    /**
+     * Deletes the snapshots of sources that no longer exist.
+     */
+    void retain(List<Source> sources) {
+        File[] files = mSnapshotDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Set<String> names = new HashSet<String>();
+        for (Source source : sources) {
+            names.add(getSnapshotFile(source.getId()).getName());
+        }
+
+        for (File file : files) {
+            if (!names.contains(file.getName())) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Lists the video files of a directory and records its time. Subdirectories are listed too
+     * if they are new or if the whole tree is being listed.
+     */
+    private void list(SmbFile dir, Snapshot snapshot, Changes changes, boolean isNewTree)
+            throws IOException {
+
+        String path = dir.getPath();
+
+        // read before listing, so a file added meanwhile shows up again on the next check
+        snapshot.mTimes.put(path, dir.lastModified());
+        changes.mListedDirs.add(path);
+
+        for (SmbFile child : dir.listFiles()) {
+            if (child.isDirectory()) {
+                if (isNewTree || !snapshot.mTimes.containsKey(child.getPath())) {
+                    list(child, snapshot, changes, true);
+                }
+            } else if (VideoUtils.isVideoFile(child.getName())) {
+                changes.mFiles.put(child.getPath(), child);
+            }
+        }
+    }
+
+    private static void removeTree(Snapshot snapshot, String dir) {
+        Iterator<String> it = snapshot.mTimes.tailMap(dir).keySet().iterator();
+        while (it.hasNext() && it.next().startsWith(dir)) {
+            it.remove();
+        }
+    }
+
+    private File getSnapshotFile(long sourceId) {
+        return new File(mSnapshotDir, FILE_PREFIX + sourceId);
+    }
+
+    /**
+     * Reads a snapshot: the time of the last full scan on the first line, then one directory per
+     * line as its time, a tab and its path.
+     */
+    private static Snapshot read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        try {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), "UTF-8"));
+            try {
+                String line = reader.readLine();
+                if (line == null) {
+                    return null;
+                }
+
+                Snapshot snapshot = new Snapshot(Long.parseLong(line));
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab > 0) {
+                        snapshot.mTimes.put(line.substring(tab + 1),
+                                Long.parseLong(line.substring(0, tab)));
+                    }
+                }
+                return snapshot;
+            } finally {
+                reader.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read " + file, e);
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Ignoring malformed " + file, e);
+        }
+        return null;
+    }
+
+    private void write(File file, Snapshot snapshot) {
+        if (!mSnapshotDir.exists() && !mSnapshotDir.mkdirs()) {
+            Log.w(TAG, "Unable to create " + mSnapshotDir);
+            return;
+        }
+
+        // written next to the old one and renamed, so a crash never leaves half a snapshot
+        File tmp = new File(mSnapshotDir, file.getName() + ".tmp");
+        try {
+            BufferedWriter writer = new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8"));
+            try {
+                writer.write(String.valueOf(snapshot.mFullScanTime));
+                writer.newLine();
+                for (Map.Entry<String, Long> entry : snapshot.mTimes.entrySet()) {
+                    writer.write(entry.getValue() + "\t" + entry.getKey());
+                    writer.newLine();
+                }
+            } finally {
+                writer.close();
+            }
+
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Unable to rename " + tmp);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save " + file, e);
+            tmp.delete();
+        }
+    }
+
+    private static final class Snapshot {
+
+        final long mFullScanTime;
+        final TreeMap<String, Long> mTimes = new TreeMap<String, Long>();
+
+        Snapshot(long fullScanTime) {
+            mFullScanTime = fullScanTime;
+        }
+    }
+}
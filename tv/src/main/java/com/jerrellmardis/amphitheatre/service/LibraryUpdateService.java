@@ -16,20 +16,31 @@
 
 package com.jerrellmardis.amphitheatre.service;
 
-import android.app.IntentService;
+import android.app.AlarmManager;
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
+import android.util.SparseArray;
 
-import com.jerrellmardis.amphitheatre.api.TMDbClient;
+import com.jerrellmardis.amphitheatre.db.BatchWriter;
+import com.jerrellmardis.amphitheatre.db.RelatedMoviesDao;
+import com.jerrellmardis.amphitheatre.db.SearchDao;
 import com.jerrellmardis.amphitheatre.model.Source;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.jerrellmardis.amphitheatre.model.tmdb.Config;
+import com.jerrellmardis.amphitheatre.model.VideoGenre;
 import com.jerrellmardis.amphitheatre.task.DownloadTaskHelper;
+import com.jerrellmardis.amphitheatre.util.ArtworkCache;
 import com.jerrellmardis.amphitheatre.util.Constants;
-import com.jerrellmardis.amphitheatre.util.SecurePreferences;
-import com.orm.query.Condition;
-import com.orm.query.Select;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
+import com.jerrellmardis.amphitheatre.util.SmbCredentials;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -41,64 +52,231 @@ import jcifs.smb.SmbFile;
 import static com.jerrellmardis.amphitheatre.model.Source.Type;
 
 /**
- * Created by Jerrell Mardis on 8/16/14.
+ * Keeps the library in sync with the sources, run by the {@link JobScheduler}.
+ *
+ * A periodic job checks the sources while the device is idle, charging and on an unmetered
+ * network. {@link LibraryChangeWatcher} finds the directories that changed since the last run,
+ * so only those are listed and reconciled, and a run in which nothing changed ends without
+ * touching the database. If a source can't be read, a one-off retry job runs the update again
+ * with an exponential backoff until it succeeds.
  */
-public class LibraryUpdateService extends IntentService {
+public class LibraryUpdateService extends JobService {
 
     private static final String TAG = "LibraryUpdateService";
 
-    public LibraryUpdateService() {
-        super("LibraryUpdateService");
+    private static final int PERIODIC_JOB_ID = 1;
+    private static final int RETRY_JOB_ID = 2;
+
+    private static final long UPDATE_INTERVAL_MS = AlarmManager.INTERVAL_HALF_HOUR;
+    private static final long RETRY_BACKOFF_MS = 60 * 1000;
+
+    private final SparseArray<UpdateThread> mThreads = new SparseArray<UpdateThread>();
+
+    /**
+     * Schedules the periodic update unless it is already scheduled.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == PERIODIC_JOB_ID) {
+                return;
+            }
+        }
+
+        scheduler.schedule(new JobInfo.Builder(PERIODIC_JOB_ID,
+                new ComponentName(context, LibraryUpdateService.class))
+                .setPeriodic(UPDATE_INTERVAL_MS)
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setPersisted(true)
+                .build());
+    }
+
+    // idle jobs can't have a backoff, so failures are retried by a separate job without that
+    // constraint
+    private static void scheduleRetry(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+
+        scheduler.schedule(new JobInfo.Builder(RETRY_JOB_ID,
+                new ComponentName(context, LibraryUpdateService.class))
+                .setMinimumLatency(RETRY_BACKOFF_MS)
+                .setBackoffCriteria(RETRY_BACKOFF_MS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setRequiresCharging(true)
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setPersisted(true)
+                .build());
+    }
+
+    private static void cancelRetry(Context context) {
+        JobScheduler scheduler =
+                (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        scheduler.cancel(RETRY_JOB_ID);
     }
 
     @Override
-    protected void onHandleIntent(Intent intent) {
-        try {
-            List<Source> sources = Source.listAll(Source.class);
+    public boolean onStartJob(JobParameters params) {
+        UpdateThread thread = new UpdateThread(params);
+        mThreads.put(params.getJobId(), thread);
+        thread.start();
+        return true;
+    }
 
-            if (sources != null && !sources.isEmpty()) {
-                SecurePreferences prefs = new SecurePreferences(getApplicationContext());
-                String user = prefs.getString(Constants.PREFS_USER_KEY, "");
-                String pass = prefs.getString(Constants.PREFS_PASSWORD_KEY, "");
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        UpdateThread thread = mThreads.get(params.getJobId());
+        if (thread != null) {
+            thread.mIsStopped = true;
+            mThreads.remove(params.getJobId());
+        }
+
+        // the periodic job comes back on its own, a retry has to be rescheduled
+        return params.getJobId() == RETRY_JOB_ID;
+    }
+
+    private class UpdateThread extends Thread {
+
+        private final JobParameters mParams;
+        volatile boolean mIsStopped;
+
+        UpdateThread(JobParameters params) {
+            super("LibraryUpdateService");
+            mParams = params;
+        }
 
-                Config config = TMDbClient.getConfig();
+        @Override
+        public void run() {
+            boolean isUpdated = updateLibrary(this);
+            if (mIsStopped) {
+                return;
+            }
+
+            if (mParams.getJobId() == RETRY_JOB_ID) {
+                jobFinished(mParams, !isUpdated);
+            } else {
+                if (isUpdated) {
+                    cancelRetry(LibraryUpdateService.this);
+                } else {
+                    scheduleRetry(LibraryUpdateService.this);
+                }
+                jobFinished(mParams, false);
+            }
+        }
+    }
+
+    /**
+     * Brings the library up to date with every source that changed.
+     *
+     * @return false if a source couldn't be read and the update should be tried again
+     */
+    private boolean updateLibrary(UpdateThread thread) {
+        // the periodic and the retry job may overlap
+        synchronized (LibraryUpdateService.class) {
+            try {
+                List<Source> sources = Source.listAll(Source.class);
+                if (sources == null || sources.isEmpty()) {
+                    return true;
+                }
+
+                LibraryChangeWatcher watcher =
+                        new LibraryChangeWatcher(this, SmbCredentials.getAuth(this));
+                watcher.retain(sources);
+
+                boolean isUpdated = true;
+                boolean isChanged = false;
+                List<Video> addedVideos = new ArrayList<Video>();
+                List<Long> removedMovieIds = new ArrayList<Long>();
+                List<LibraryChangeWatcher.Changes> appliedChanges =
+                        new ArrayList<LibraryChangeWatcher.Changes>();
 
                 for (Source source : sources) {
-                    // get a list of files on the device
-                    List<SmbFile> systemFiles = DownloadTaskHelper.getFiles(user, pass, getPath(source));
-
-                    if (systemFiles != null && !systemFiles.isEmpty()) {
-                        // convert the list of SmbFiles to a Map of file paths to SmbFiles
-                        Map<String, SmbFile> systemFileMap = new HashMap<String, SmbFile>(systemFiles.size());
-                        for (SmbFile file : systemFiles) {
-                            systemFileMap.put(file.getPath(), file);
-                        }
+                    if (thread.mIsStopped) {
+                        return false;
+                    }
+
+                    LibraryChangeWatcher.Changes changes;
+                    try {
+                        changes = watcher.check(source, getPath(source));
+                    } catch (IOException e) {
+                        Log.w(TAG, "Unable to read " + source.getSource(), e);
+                        isUpdated = false;
+                        continue;
+                    }
+
+                    if (changes.isEmpty()) {
+                        continue;
+                    }
+
+                    // an empty share is more likely a server hiccup than a deleted library; its
+                    // snapshot isn't saved, so the next run scans it in full again
+                    if (changes.mIsFullScan && changes.mFiles.isEmpty()) {
+                        continue;
+                    }
+
+                    if (!isChanged) {
+                        ImageUtils.updateConfig(this);
+                        DownloadTaskHelper.clearSeasonCache();
+                        isChanged = true;
+                    }
 
-                        reconcileVideoFiles(source, config, systemFileMap);
+                    // files that failed are picked up again by the next run, which finds the
+                    // same changes as long as the snapshot isn't saved
+                    if (reconcileVideoFiles(source, changes, addedVideos, removedMovieIds)) {
+                        appliedChanges.add(changes);
                     }
                 }
 
-                sendBroadcast(new Intent(Constants.LIBRARY_UPDATED_ACTION));
+                if (isChanged) {
+                    // the new videos are only queued until the flush, so the snapshots are saved
+                    // once it committed them; otherwise the next run finds the same changes
+                    if (BatchWriter.getInstance().flush()) {
+                        for (LibraryChangeWatcher.Changes changes : appliedChanges) {
+                            watcher.save(changes);
+                        }
+                    } else {
+                        isUpdated = false;
+                    }
+
+                    RelatedMoviesDao.update(addedVideos, removedMovieIds);
+                    ArtworkCache.prewarm(this);
+
+                    sendBroadcast(new Intent(Constants.LIBRARY_UPDATED_ACTION));
+                    RecommendationsService.update(this);
+                }
+
+                return isUpdated;
+            } catch (Exception e) {
+                Log.e(TAG, "An error occurred while updating the library.", e);
+                return false;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "An error occurred while updating the library.", e);
         }
     }
 
-    private void reconcileVideoFiles(Source source, Config config, Map<String, SmbFile> systemFileMap) {
+    /**
+     * Applies the changes of a source to the library.
+     *
+     * @return false if a video couldn't be removed or a new file couldn't be added
+     */
+    private boolean reconcileVideoFiles(Source source, LibraryChangeWatcher.Changes changes,
+                                        List<Video> addedVideos, List<Long> removedMovieIds) {
         boolean isMovie = Type.MOVIE == Type.valueOf(source.getType());
+        Map<String, SmbFile> systemFileMap = changes.mFiles;
 
-        List<Video> videos = Select
-                .from(Video.class)
-                .where(Condition.prop("is_movie").eq(isMovie ? 1 : 0),
-                        Condition.prop("video_url").like("%" + source.getSource() + "%"))
-                .list();
+        List<Video> videos = Video.find(Video.class, "source_id = ?",
+                String.valueOf(source.getId()));
+        boolean isComplete = true;
 
         if (videos != null && !videos.isEmpty()) {
-            // convert the list of videos saved in the db to a Map of file paths to Videos
+            // convert the videos saved in the db whose directories were checked to a Map of file
+            // paths to Videos
             Map<String, Video> dbFileMap = new HashMap<String, Video>(videos.size());
             for (Video video : videos) {
-                dbFileMap.put(video.getVideoUrl(), video);
+                if (changes.covers(video.getVideoUrl())) {
+                    dbFileMap.put(video.getVideoUrl(), video);
+                }
             }
 
             Set<String> clonedSystemFileNames = new HashSet<String>(systemFileMap.keySet());
@@ -110,30 +288,52 @@ public class LibraryUpdateService extends IntentService {
             dbFileMap.keySet().removeAll(clonedSystemFileNames);
 
             // delete the video and associations
-            // ignore failures, continue on
+            // the associations may be missing, so only a failure to delete the video counts
             for (Map.Entry<String, Video> entry : dbFileMap.entrySet()) {
+                try {
+                    VideoGenre.deleteAll(VideoGenre.class, "video = ?",
+                            String.valueOf(entry.getValue().getId()));
+                } catch (Exception e) { /* do nothing */ }
+                try { SearchDao.delete(entry.getValue().getId()); } catch (Exception e) { /* do nothing */ }
+
                 if (isMovie) {
+                    removedMovieIds.add(entry.getValue().getId());
                     try { entry.getValue().getMovie().delete(); } catch (Exception e) { /* do nothing */ }
-                    try { entry.getValue().delete(); } catch (Exception e) { /* do nothing */ }
                 } else {
                     try { entry.getValue().getTvShow().getEpisode().delete(); } catch (Exception e) { /* do nothing */ }
                     try { entry.getValue().getTvShow().delete(); } catch (Exception e) { /* do nothing */ }
-                    try { entry.getValue().delete(); } catch (Exception e) { /* do nothing */ }
+                }
+
+                try {
+                    entry.getValue().delete();
+                } catch (Exception e) {
+                    Log.w(TAG, "Unable to remove " + entry.getKey(), e);
+                    isComplete = false;
                 }
             }
 
             // download data for the new files
-            // ignore failures, continue on
+            // keep going after a failure, the file is retried by the next run
             if (!systemFileMap.values().isEmpty()) {
                 for (SmbFile file : systemFileMap.values()) {
-                    if (isMovie) {
-                        try { DownloadTaskHelper.downloadMovieData(config, file); } catch (Exception e) { /* do nothing */ }
-                    } else {
-                        try { DownloadTaskHelper.downloadTvShowData(config, file); } catch (Exception e) { /* do nothing */ }
+                    try {
+                        if (isMovie) {
+                            Video video = DownloadTaskHelper.downloadMovieData(source, file);
+                            if (video != null) {
+                                addedVideos.add(video);
+                            }
+                        } else {
+                            DownloadTaskHelper.downloadTvShowData(source, file);
+                        }
+                    } catch (Exception e) {
+                        Log.w(TAG, "Unable to add " + file.getPath(), e);
+                        isComplete = false;
                     }
                 }
             }
         }
+
+        return isComplete;
     }
 
     private String getPath(Source source) {
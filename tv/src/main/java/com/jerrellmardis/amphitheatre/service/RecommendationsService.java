@@ -17,194 +17,231 @@
 package com.jerrellmardis.amphitheatre.service;
 
 import android.app.IntentService;
+import android.app.Notification;
+import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.TaskStackBuilder;
+import android.content.Context;
 import android.content.Intent;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.activity.DetailsActivity;
+import com.jerrellmardis.amphitheatre.db.VideoDao;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.jerrellmardis.amphitheatre.util.Constants;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
 import com.jerrellmardis.amphitheatre.util.RecommendationBuilder;
-import com.orm.query.Condition;
-import com.orm.query.Select;
+import com.jerrellmardis.amphitheatre.util.Utils;
+import com.jerrellmardis.amphitheatre.widget.CardPresenter;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Posts the home screen recommendations, most relevant first: videos the user started but didn't
+ * finish, the next episode of shows the user has been watching, then the latest unwatched
+ * episodes and movies.
+ *
+ * Started whenever the library or the watch state changes. The picked videos are compared to the
+ * ones posted last, so a run with nothing new returns before touching any image. Otherwise the
+ * notifications are built in parallel. Their images are requested at the browse card size, so a
+ * poster already shown on a card comes straight from the memory cache.
+ */
 public class RecommendationsService extends IntentService {
 
     private static final String TAG = "RecommendationsService";
 
+    private static final int MAX_RECOMMENDATIONS = 4;
+    private static final int MAX_CONTINUE_WATCHING_RECOMMENDATIONS = 2;
+    private static final int MAX_NEXT_EPISODE_RECOMMENDATIONS = 2;
     private static final int MAX_TV_SHOWS_RECOMMENDATIONS = 2;
     private static final int MAX_MOVIE_RECOMMENDATIONS = 1;
 
+    private static final int THREAD_COUNT = 3;
+
+    // what this process posted last; notifications don't survive a reboot, which restarts it too
+    private static String sPostedKey;
+
+    private int mBackgroundWidth;
+
     public RecommendationsService() {
         super("RecommendationsService");
     }
 
+    /**
+     * Updates the recommendations, e.g. after a scan or after a video was played.
+     */
+    public static void update(Context context) {
+        context.startService(new Intent(context, RecommendationsService.class));
+    }
+
     @Override
     protected void onHandleIntent(Intent intent) {
-        RecommendationBuilder builder = new RecommendationBuilder()
-                .setContext(getApplicationContext())
-                .setSmallIcon(R.drawable.ic_tv_small);
+        mBackgroundWidth = Utils.getDisplaySize(this).x;
 
-        recommendMovies(builder);
-        recommendTvShows(builder);
-    }
+        Picks picks = new Picks();
 
-    private void recommendMovies(RecommendationBuilder builder) {
-        List<Video> videos = Select
-                .from(Video.class)
-                .where(Condition.prop("is_matched").eq(1),
-                        Condition.prop("is_movie").eq(1),
-                        Condition.prop("is_watched").eq(0))
-                .list();
-
-        // filter out movies without a release date
-        for (Iterator<Video> i = videos.iterator(); i.hasNext();) {
-            Video video = i.next();
-            if (video == null || video.getMovie() == null ||
-                    TextUtils.isEmpty(video.getMovie().getReleaseDate())) {
-
-                i.remove();
-            }
+        try {
+            picks.add(VideoDao.getInProgress(MAX_RECOMMENDATIONS),
+                    getString(R.string.continue_watching), MAX_CONTINUE_WATCHING_RECOMMENDATIONS);
+            picks.add(VideoDao.getNextEpisodes(MAX_RECOMMENDATIONS),
+                    getString(R.string.next_episode), MAX_NEXT_EPISODE_RECOMMENDATIONS);
+            picks.add(VideoDao.getLatestUnwatchedTvShows(MAX_RECOMMENDATIONS),
+                    getString(R.string.recently_aired), MAX_TV_SHOWS_RECOMMENDATIONS);
+            picks.add(VideoDao.getLatestUnwatchedMovies(MAX_MOVIE_RECOMMENDATIONS),
+                    getString(R.string.recently_released), MAX_MOVIE_RECOMMENDATIONS);
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to read the recommendations", e);
+            return;
+        }
+
+        String key = picks.mKey.toString();
+        if (key.equals(sPostedKey)) {
+            Log.d(TAG, "Recommendations are up to date");
+            return;
         }
 
-        Collections.sort(videos, new Comparator<Video>() {
-            final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
+        if (post(picks.mBuilders)) {
+            sPostedKey = key;
+        }
+    }
+
+    private RecommendationBuilder newBuilder(Video video, int id, String description) {
+        // the size of the browse cards, so the poster is usually cached already
+        String imageUrl = ImageUtils.getPosterUrl(this, video.getCardImageUrl(),
+                CardPresenter.CARD_WIDTH);
+        String backgroundUrl = ImageUtils.getBackdropUrl(this, video.getBackgroundImageUrl(),
+                mBackgroundWidth);
+
+        return new RecommendationBuilder()
+                .setContext(getApplicationContext())
+                .setSmallIcon(R.drawable.ic_tv_small)
+                .setBackground(backgroundUrl)
+                .setId(id)
+                .setPriority(Math.max(Notification.PRIORITY_MIN, Notification.PRIORITY_MAX - id))
+                .setTitle(video.getName())
+                .setDescription(description)
+                .setProgress(video.getResumePercent())
+                .setImage(imageUrl)
+                .setIntent(buildPendingIntent(video));
+    }
+
+    /**
+     * The recommendations picked so far, in order, and a key describing them.
+     */
+    private class Picks {
+
+        final List<RecommendationBuilder> mBuilders = new ArrayList<RecommendationBuilder>();
+        final StringBuilder mKey = new StringBuilder();
+
+        private final Set<Long> mVideoIds = new HashSet<Long>();
+        private final Set<String> mTvShows = new HashSet<String>();
 
-            @Override
-            public int compare(Video o1, Video o2) {
-                if (o1.getMovie().getReleaseDate() == null) {
-                    return (o2.getMovie().getReleaseDate() == null) ? 0 : -1;
+        /**
+         * Adds up to {@code max} of the videos that aren't picked already.
+         */
+        void add(List<Video> videos, String description, int max) {
+            int added = 0;
+
+            for (Video video : videos) {
+                if (added >= max || mBuilders.size() >= MAX_RECOMMENDATIONS) {
+                    return;
                 }
-                if (o2.getMovie().getReleaseDate() == null) {
-                    return 1;
+
+                if (TextUtils.isEmpty(video.getCardImageUrl()) ||
+                        TextUtils.isEmpty(video.getBackgroundImageUrl()) ||
+                        (video.isMovie() ? video.getMovie() == null : video.getTvShow() == null) ||
+                        mVideoIds.contains(video.getId())) {
+                    continue;
                 }
 
-                try {
-                    return sdf.parse(o2.getMovie().getReleaseDate())
-                            .compareTo(sdf.parse(o1.getMovie().getReleaseDate()));
-                } catch (ParseException e) {
-                    e.printStackTrace();
+                // add only distinct TV shows since the user will be taken to the Detail
+                // Activity which lists episodes and seasons
+                if (!video.isMovie() && !mTvShows.add(video.getName())) {
+                    continue;
                 }
 
-                return 0;
-            }
-        });
+                int id = mBuilders.size();
+                mVideoIds.add(video.getId());
+                mBuilders.add(newBuilder(video, id, description));
 
-        try {
-            int numOfRecommendedVideos = 0;
+                mKey.append(id).append(':')
+                        .append(video.getId()).append(':')
+                        .append(description).append(':')
+                        .append(video.getResumePercent()).append(':')
+                        .append(video.getCardImageUrl()).append(':')
+                        .append(video.getBackgroundImageUrl()).append(';');
 
-            for (Video video : videos) {
-                if (video.getMovie() != null && !TextUtils.isEmpty(video.getCardImageUrl()) &&
-                        !TextUtils.isEmpty(video.getBackgroundImageUrl())) {
-
-                    builder.setBackground(video.getBackgroundImageUrl())
-                            .setId(MAX_TV_SHOWS_RECOMMENDATIONS + numOfRecommendedVideos)
-                            .setPriority(MAX_TV_SHOWS_RECOMMENDATIONS + numOfRecommendedVideos)
-                            .setTitle(video.getName())
-                            .setDescription(getString(R.string.recently_released))
-                            .setImage(video.getCardImageUrl())
-                            .setIntent(buildPendingIntent(video))
-                            .build();
-
-                    if (++numOfRecommendedVideos >= MAX_MOVIE_RECOMMENDATIONS) {
-                        break;
-                    }
-                }
+                added++;
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Unable to update recommendation", e);
         }
     }
 
-    private void recommendTvShows(RecommendationBuilder builder) {
-        List<Video> videos = Select
-                .from(Video.class)
-                .where(Condition.prop("is_matched").eq(1),
-                        Condition.prop("is_movie").eq(0),
-                        Condition.prop("is_watched").eq(0))
-                .list();
-
-        // filter out TV shows without an air,m  date
-        for (Iterator<Video> i = videos.iterator(); i.hasNext();) {
-            Video video = i.next();
-            if (video == null || video.getTvShow() == null || video.getTvShow().getEpisode() == null ||
-                    TextUtils.isEmpty(video.getTvShow().getEpisode().getAirDate())) {
-
-                i.remove();
+    /**
+     * Builds and posts the notifications in parallel and removes the ones that have nothing to
+     * show anymore. Returns whether all of them were posted.
+     */
+    private boolean post(List<RecommendationBuilder> builders) {
+        NotificationManager notificationManager =
+                (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
+
+        Set<Integer> postedIds = new HashSet<Integer>();
+        for (RecommendationBuilder builder : builders) {
+            postedIds.add(builder.getId());
+        }
+        for (int id = 0; id < MAX_RECOMMENDATIONS; id++) {
+            if (!postedIds.contains(id)) {
+                notificationManager.cancel(id);
             }
         }
 
-        Collections.sort(videos, new Comparator<Video>() {
-            final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-
-            @Override
-            public int compare(Video o1, Video o2) {
-                if (o1.getTvShow().getEpisode().getAirDate() == null) {
-                    return (o2.getTvShow().getEpisode().getAirDate() == null) ? 0 : -1;
-                }
-                if (o2.getTvShow().getEpisode().getAirDate() == null) {
-                    return 1;
-                }
+        if (builders.isEmpty()) {
+            return true;
+        }
 
-                try {
-                    return sdf.parse(o2.getTvShow().getEpisode().getAirDate())
-                            .compareTo(sdf.parse(o1.getTvShow().getEpisode().getAirDate()));
-                } catch (ParseException e) {
-                    e.printStackTrace();
+        List<Callable<Notification>> tasks = new ArrayList<Callable<Notification>>();
+        for (final RecommendationBuilder builder : builders) {
+            tasks.add(new Callable<Notification>() {
+                @Override
+                public Notification call() throws Exception {
+                    return builder.build();
                 }
+            });
+        }
 
-                return 0;
-            }
-        });
+        ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(THREAD_COUNT, tasks.size()));
+        boolean isPosted = true;
 
         try {
-            int numOfRecommendedVideos = 0;
-
-            Set<String> recommendedTvShows = new HashSet<String>();
-
-            for (Video video : videos) {
-                if (video.getTvShow() != null && !TextUtils.isEmpty(video.getCardImageUrl()) &&
-                        !TextUtils.isEmpty(video.getBackgroundImageUrl()) &&
-                        !recommendedTvShows.contains(video.getName())) {
-
-                    // add only distinct TV shows since the user will be taken to the Detail
-                    // Activity which lists episodes and seasons
-                    recommendedTvShows.add(video.getName());
-
-                    builder.setBackground(video.getBackgroundImageUrl())
-                            .setId(numOfRecommendedVideos)
-                            .setPriority(numOfRecommendedVideos)
-                            .setTitle(video.getName())
-                            .setDescription(getString(R.string.recently_aired))
-                            .setImage(video.getCardImageUrl())
-                            .setIntent(buildPendingIntent(video))
-                            .build();
-
-                    if (++numOfRecommendedVideos >= MAX_TV_SHOWS_RECOMMENDATIONS) {
-                        break;
-                    }
+            for (Future<Notification> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Log.e(TAG, "Unable to update recommendation", e.getCause());
+                    isPosted = false;
                 }
             }
-        } catch (Exception e) {
-            Log.e(TAG, "Unable to update recommendation", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            isPosted = false;
+        } finally {
+            executor.shutdown();
         }
+
+        return isPosted;
     }
 
     private PendingIntent buildPendingIntent(Video video) {
-        Intent detailsIntent = new Intent(this, DetailsActivity.class);
-        detailsIntent.putExtra(Constants.VIDEO, video);
+        Intent detailsIntent = DetailsActivity.newIntent(this, video, true);
 
         TaskStackBuilder stackBuilder = TaskStackBuilder.create(this);
         stackBuilder.addParentStack(DetailsActivity.class);
@@ -213,4 +250,4 @@ public class RecommendationsService extends IntentService {
 
         return stackBuilder.getPendingIntent(0, PendingIntent.FLAG_UPDATE_CURRENT);
     }
-}
\ No newline at end of file
+}
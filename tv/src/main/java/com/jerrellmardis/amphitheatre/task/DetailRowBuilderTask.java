@@ -33,19 +33,16 @@ import android.widget.Toast;
 import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.listeners.RowBuilderTaskListener;
 import com.jerrellmardis.amphitheatre.model.Video;
+import com.jerrellmardis.amphitheatre.util.ArtworkCache;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
 import com.jerrellmardis.amphitheatre.util.Utils;
 import com.jerrellmardis.amphitheatre.util.VideoUtils;
 import com.jerrellmardis.amphitheatre.widget.CardPresenter;
 import com.jerrellmardis.amphitheatre.widget.DetailsDescriptionPresenter;
 import com.jerrellmardis.amphitheatre.widget.SeasonCardPresenter;
-import com.squareup.picasso.Picasso;
 
 import java.io.IOException;
 import java.lang.ref.WeakReference;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 
@@ -79,10 +76,12 @@ public class DetailRowBuilderTask extends AsyncTask<Video, Integer, DetailsOverv
 
         DetailsOverviewRow row = new DetailsOverviewRow(mVideo);
         try {
-            Bitmap poster = Picasso.with(mActivity)
-                    .load(mVideo.getCardImageUrl())
-                    .resize(Utils.dpToPx(DETAIL_THUMB_WIDTH, mActivity.getApplicationContext()),
-                            Utils.dpToPx(DETAIL_THUMB_HEIGHT, mActivity.getApplicationContext()))
+            int width = Utils.dpToPx(DETAIL_THUMB_WIDTH, mActivity.getApplicationContext());
+            int height = Utils.dpToPx(DETAIL_THUMB_HEIGHT, mActivity.getApplicationContext());
+
+            Bitmap poster = ArtworkCache.getCardPicasso(mActivity)
+                    .load(ImageUtils.getPosterUrl(mActivity, mVideo.getCardImageUrl(), width))
+                    .resize(width, height)
                     .centerCrop()
                     .get();
             row.setImageBitmap(mActivity, poster);
@@ -137,12 +136,11 @@ public class DetailRowBuilderTask extends AsyncTask<Video, Integer, DetailsOverv
                     CardPresenter presenter;
                     ArrayObjectAdapter listRowAdapter;
 
+                    // related movies come ranked by similarity and episodes by air date
                     if (mVideo.isMovie()) {
                         presenter = new CardPresenter(mActivity);
-                        sortMovies(entry.getValue());
                     } else {
                         presenter = new SeasonCardPresenter(mActivity);
-                        sortTvShows(entry.getValue());
                     }
 
                     listRowAdapter = new ArrayObjectAdapter(presenter);
@@ -158,56 +156,4 @@ public class DetailRowBuilderTask extends AsyncTask<Video, Integer, DetailsOverv
             }
         }
     }
-
-    private void sortMovies(List<Video> videos) {
-        final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-
-        // sort by date
-        Collections.sort(videos, new Comparator<Video>() {
-            @Override
-            public int compare(Video o1, Video o2) {
-                if (o1.getMovie().getReleaseDate() == null) {
-                    return (o2.getMovie().getReleaseDate() == null) ? 0 : -1;
-                }
-                if (o2.getMovie().getReleaseDate() == null) {
-                    return 1;
-                }
-
-                try {
-                    return sdf.parse(o2.getMovie().getReleaseDate())
-                            .compareTo(sdf.parse(o1.getMovie().getReleaseDate()));
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                }
-
-                return 0;
-            }
-        });
-    }
-
-    private void sortTvShows(List<Video> videos) {
-        final SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
-
-        // sort by date
-        Collections.sort(videos, new Comparator<Video>() {
-            @Override
-            public int compare(Video o1, Video o2) {
-                if (o2.getTvShow().getEpisode().getAirDate() == null) {
-                    return (o1.getTvShow().getEpisode().getAirDate() == null) ? 0 : -1;
-                }
-                if (o1.getTvShow().getEpisode().getAirDate() == null) {
-                    return 1;
-                }
-
-                try {
-                    return sdf.parse(o1.getTvShow().getEpisode().getAirDate())
-                            .compareTo(sdf.parse(o2.getTvShow().getEpisode().getAirDate()));
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                }
-
-                return 0;
-            }
-        });
-    }
-}
\ No newline at end of file
+}
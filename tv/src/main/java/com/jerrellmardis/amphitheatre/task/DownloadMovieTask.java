@@ -18,10 +18,14 @@ package com.jerrellmardis.amphitheatre.task;
 
 import android.content.Context;
 
+import com.jerrellmardis.amphitheatre.db.BatchWriter;
+import com.jerrellmardis.amphitheatre.db.RelatedMoviesDao;
 import com.jerrellmardis.amphitheatre.listeners.TaskListener;
+import com.jerrellmardis.amphitheatre.model.Source;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.jerrellmardis.amphitheatre.model.tmdb.Config;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import jcifs.smb.SmbFile;
@@ -31,20 +35,25 @@ import jcifs.smb.SmbFile;
  */
 public class DownloadMovieTask extends DownloadVideoTask {
 
-    public DownloadMovieTask(Context context, Config config, List<SmbFile> files,
-                             TaskListener l) {
+    public DownloadMovieTask(Context context, Source source,
+                             List<SmbFile> files, TaskListener l) {
 
-        super(context, config, files, l);
+        super(context, source, files, l);
     }
 
     @Override
     protected Boolean doInBackground(Void... params) {
+        List<Video> videos = new ArrayList<Video>();
         for (SmbFile file : mFiles) {
-            Video video = DownloadTaskHelper.downloadMovieData(mConfig, file);
+            Video video = DownloadTaskHelper.downloadMovieData(mSource, file);
             if (video != null) {
-                publishProgress(video);
+                videos.add(video);
+                publishWhenSaved(video);
             }
         }
-        return true;
+        // videos that couldn't be saved have no id and are left out of the related lists
+        boolean isSaved = BatchWriter.getInstance().flush();
+        RelatedMoviesDao.update(videos, Collections.<Long>emptyList());
+        return isSaved;
     }
 }
\ No newline at end of file
@@ -17,17 +17,23 @@
 package com.jerrellmardis.amphitheatre.task;
 
 import android.text.TextUtils;
+import android.util.LruCache;
 
 import com.jerrellmardis.amphitheatre.api.GuessItClient;
 import com.jerrellmardis.amphitheatre.api.TMDbClient;
+import com.jerrellmardis.amphitheatre.db.BatchWriter;
+import com.jerrellmardis.amphitheatre.db.SearchDao;
+import com.jerrellmardis.amphitheatre.model.Source;
 import com.jerrellmardis.amphitheatre.model.Video;
+import com.jerrellmardis.amphitheatre.model.VideoGenre;
 import com.jerrellmardis.amphitheatre.model.guessit.Guess;
-import com.jerrellmardis.amphitheatre.model.tmdb.Config;
 import com.jerrellmardis.amphitheatre.model.tmdb.Episode;
 import com.jerrellmardis.amphitheatre.model.tmdb.Movie;
 import com.jerrellmardis.amphitheatre.model.tmdb.SearchResult;
+import com.jerrellmardis.amphitheatre.model.tmdb.Season;
 import com.jerrellmardis.amphitheatre.model.tmdb.TvShow;
 import com.jerrellmardis.amphitheatre.util.Constants;
+import com.jerrellmardis.amphitheatre.util.Utils;
 import com.jerrellmardis.amphitheatre.util.VideoUtils;
 
 import org.apache.commons.lang3.StringUtils;
@@ -35,6 +41,7 @@ import org.apache.commons.lang3.text.WordUtils;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 import jcifs.smb.NtlmPasswordAuthentication;
 import jcifs.smb.SmbException;
@@ -45,6 +52,19 @@ import jcifs.smb.SmbFile;
  */
 public final class DownloadTaskHelper {
 
+    // enough for the seasons of one scan to stay cached while its files are being matched
+    private static final int MAX_CACHED_SEASONS = 100;
+
+    // Seasons fetched from TMDb, keyed by "<tmdbId>:<seasonNumber>". An empty Season is cached
+    // when the lookup fails so the remaining files of that season go straight to the fallback.
+    private static final LruCache<String, Season> sSeasonCache =
+            new LruCache<String, Season>(MAX_CACHED_SEASONS);
+
+    // TV shows queued in the BatchWriter but not written yet, by original name, so other files
+    // of the same show reuse them instead of searching TMDb again
+    private static final ConcurrentHashMap<String, TvShow> sPendingTvShows =
+            new ConcurrentHashMap<String, TvShow>();
+
     public static List<SmbFile> getFiles(String user, String password, String path) {
         NtlmPasswordAuthentication auth = new NtlmPasswordAuthentication("", user, password);
 
@@ -58,7 +78,7 @@ public final class DownloadTaskHelper {
         return files;
     }
 
-    public static Video downloadMovieData(Config config, SmbFile file) {
+    public static Video downloadMovieData(Source source, SmbFile file) {
         if (TextUtils.isEmpty(file.getPath()) || file.getName().toLowerCase().contains(Constants.SAMPLE)) {
             return null;
         }
@@ -78,6 +98,7 @@ public final class DownloadTaskHelper {
         }
 
         Video video = new Video();
+        video.setSourceId(source.getId());
 
         try {
             video.setCreated(file.createTime());
@@ -90,7 +111,8 @@ public final class DownloadTaskHelper {
             video.setVideoUrl(file.getPath());
             video.setIsMatched(false);
             video.setIsMovie(true);
-            video.save();
+            BatchWriter.getInstance().save(video);
+            saveSearchEntry(video);
             return video;
         }
 
@@ -113,33 +135,34 @@ public final class DownloadTaskHelper {
                         movie.setId(null);
                         movie.setFlattenedGenres(StringUtils.join(movie.getGenres(), ","));
                         movie.setFlattenedProductionCompanies(StringUtils.join(movie.getProductionCompanies(), ","));
-                        movie.save();
+                        BatchWriter.getInstance().save(movie);
 
                         video.setOverview(movie.getOverview());
                         video.setName(movie.getTitle());
                         video.setIsMatched(true);
                         video.setMovie(movie);
+                        video.setReleaseDay(Utils.toEpochDay(movie.getReleaseDate()));
                     }
 
-                    String cardImageUrl = config.getImages().getBase_url() + "original" +
-                            result.getResults().get(0).getPoster_path();
-                    video.setCardImageUrl(cardImageUrl);
-
-                    String bgImageUrl = config.getImages().getBase_url() + "original" +
-                            result.getResults().get(0).getBackdrop_path();
-                    video.setBackgroundImageUrl(bgImageUrl);
+                    video.setCardImageUrl(result.getResults().get(0).getPoster_path());
+                    video.setBackgroundImageUrl(result.getResults().get(0).getBackdrop_path());
                 }
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
 
-        video.save();
+        BatchWriter.getInstance().save(video);
+        saveSearchEntry(video);
+
+        if (video.getMovie() != null) {
+            saveGenres(video, video.getMovie().getFlattenedGenres());
+        }
 
         return video;
     }
 
-    public static Video downloadTvShowData(Config config, SmbFile file) {
+    public static Video downloadTvShowData(Source source, SmbFile file) {
         if (TextUtils.isEmpty(file.getPath()) || file.getName().toLowerCase().contains(Constants.SAMPLE)) {
             return null;
         }
@@ -159,6 +182,7 @@ public final class DownloadTaskHelper {
         }
 
         Video video = new Video();
+        video.setSourceId(source.getId());
 
         // couldn't find a match. Create a TV Show, mark it as unmatched and move on.
         if (guess == null || TextUtils.isEmpty(guess.getSeries())) {
@@ -166,7 +190,8 @@ public final class DownloadTaskHelper {
             video.setVideoUrl(file.getPath());
             video.setIsMatched(false);
             video.setIsMovie(false);
-            video.save();
+            BatchWriter.getInstance().save(video);
+            saveSearchEntry(video);
             return video;
         }
 
@@ -179,9 +204,11 @@ public final class DownloadTaskHelper {
                 TvShow tvShow = null;
                 Long tmdbId = null;
 
-                // look for the TV show in the database first
-                List<TvShow> tvShows = TvShow.find(TvShow.class, "original_name = ?",
-                        guess.getSeries());
+                // look for the TV show in the write queue and the database first
+                TvShow pendingTvShow = sPendingTvShows.get(guess.getSeries());
+                List<TvShow> tvShows = pendingTvShow != null ?
+                        Collections.singletonList(pendingTvShow) :
+                        TvShow.find(TvShow.class, "original_name = ?", guess.getSeries());
 
                 // if a TV show is found, clone it.
                 // if not, run a TMDb search for the TV show
@@ -203,46 +230,124 @@ public final class DownloadTaskHelper {
                 if (tmdbId != null) {
                     // get the Episode information
                     if (guess.getEpisodeNumber() != null && guess.getSeason() != null) {
-                        Episode episode = TMDbClient.getEpisode(tvShow.getTmdbId(),
+                        Episode episode = getEpisode(tvShow.getTmdbId(),
                                 guess.getSeason(), guess.getEpisodeNumber());
 
                         if (episode != null) {
-                            if (!TextUtils.isEmpty(episode.getStillPath())) {
-                                String stillPathUrl = config.getImages().getBase_url() + "original" +
-                                        episode.getStillPath();
-                                episode.setStillPath(stillPathUrl);
-                            }
-
                             episode.setTmdbId(tmdbId);
                             episode.setId(null);
 
-                            episode.save();
+                            BatchWriter.getInstance().save(episode);
                             tvShow.setEpisode(episode);
                             video.setIsMatched(true);
+                            video.setReleaseDay(Utils.toEpochDay(episode.getAirDate()));
                         }
                     }
 
-                    tvShow.save();
+                    BatchWriter.getInstance().save(tvShow);
+                    addPendingTvShow(tvShow);
 
                     video.setName(tvShow.getOriginalName());
                     video.setOverview(tvShow.getOverview());
                     video.setTvShow(tvShow);
 
-                    String cardImageUrl = config.getImages().getBase_url() + "original" +
-                            tvShow.getPosterPath();
-                    video.setCardImageUrl(cardImageUrl);
-
-                    String bgImageUrl = config.getImages().getBase_url() + "original" +
-                            tvShow.getBackdropPath();
-                    video.setBackgroundImageUrl(bgImageUrl);
+                    video.setCardImageUrl(tvShow.getPosterPath());
+                    video.setBackgroundImageUrl(tvShow.getBackdropPath());
                 }
             } catch (Exception e) {
                 e.printStackTrace();
             }
         }
 
-        video.save();
+        BatchWriter.getInstance().save(video);
+        saveSearchEntry(video);
+
+        if (video.getTvShow() != null) {
+            saveGenres(video, video.getTvShow().getFlattenedGenres());
+        }
 
         return video;
     }
-}
+
+    /**
+     * Makes a queued TV show visible to {@link #downloadTvShowData(Source, SmbFile)} until the
+     * BatchWriter has saved it.
+     */
+    private static void addPendingTvShow(final TvShow tvShow) {
+        final String name = tvShow.getOriginalName();
+        if (name == null) {
+            return;
+        }
+
+        sPendingTvShows.put(name, tvShow);
+        BatchWriter.getInstance().afterSave(new Runnable() {
+            @Override
+            public void run() {
+                sPendingTvShows.remove(name, tvShow);
+            }
+        });
+    }
+
+    public static void clearSeasonCache() {
+        sSeasonCache.evictAll();
+    }
+
+    /**
+     * Queues a {@link VideoGenre} row for each genre. Must be called after the video has been
+     * queued so the video has an id by the time the genres are written.
+     */
+    private static void saveGenres(Video video, String flattenedGenres) {
+        if (TextUtils.isEmpty(flattenedGenres)) {
+            return;
+        }
+
+        for (String genre : flattenedGenres.split(",")) {
+            if (genre.trim().length() > 0) {
+                BatchWriter.getInstance().save(new VideoGenre(video, genre));
+            }
+        }
+    }
+
+    /**
+     * Queues the video's full-text search entry. Must be called after the video has been queued.
+     */
+    private static void saveSearchEntry(final Video video) {
+        BatchWriter.getInstance().execute(new Runnable() {
+            @Override
+            public void run() {
+                SearchDao.index(video);
+            }
+        });
+    }
+
+    /**
+     * Looks up an episode in the cached season listing, fetching the whole season with a single
+     * request the first time it is needed. Falls back to the per-episode endpoint when the season
+     * can't be loaded or doesn't contain the episode.
+     */
+    private static Episode getEpisode(Long tmdbId, int seasonNumber, int episodeNumber) {
+        String key = tmdbId + ":" + seasonNumber;
+
+        Season season = sSeasonCache.get(key);
+        if (season == null) {
+            try {
+                season = TMDbClient.getSeason(tmdbId, seasonNumber);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+
+            if (season == null) {
+                season = new Season();
+            }
+            sSeasonCache.put(key, season);
+        }
+
+        Episode episode = season.getEpisode(episodeNumber);
+        if (episode != null) {
+            // the cached instance is shared by every file in the season, hand out a copy
+            return Episode.copy(episode);
+        }
+
+        return TMDbClient.getEpisode(tmdbId, seasonNumber, episodeNumber);
+    }
+}
\ No newline at end of file
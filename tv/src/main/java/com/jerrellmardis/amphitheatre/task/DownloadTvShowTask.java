@@ -18,9 +18,10 @@ package com.jerrellmardis.amphitheatre.task;
 
 import android.content.Context;
 
+import com.jerrellmardis.amphitheatre.db.BatchWriter;
 import com.jerrellmardis.amphitheatre.listeners.TaskListener;
+import com.jerrellmardis.amphitheatre.model.Source;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.jerrellmardis.amphitheatre.model.tmdb.Config;
 
 import java.util.List;
 
@@ -31,20 +32,20 @@ import jcifs.smb.SmbFile;
  */
 public class DownloadTvShowTask extends DownloadVideoTask {
 
-    public DownloadTvShowTask(Context context, Config config, List<SmbFile> files,
-                              TaskListener l) {
+    public DownloadTvShowTask(Context context, Source source,
+                              List<SmbFile> files, TaskListener l) {
 
-        super(context, config, files, l);
+        super(context, source, files, l);
     }
 
     @Override
     protected Boolean doInBackground(Void... params) {
         for (SmbFile file : mFiles) {
-            Video video = DownloadTaskHelper.downloadTvShowData(mConfig, file);
+            Video video = DownloadTaskHelper.downloadTvShowData(mSource, file);
             if (video != null) {
-                publishProgress(video);
+                publishWhenSaved(video);
             }
         }
-        return true;
+        return BatchWriter.getInstance().flush();
     }
 }
\ No newline at end of file
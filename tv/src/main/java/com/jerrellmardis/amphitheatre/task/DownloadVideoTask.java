@@ -17,14 +17,13 @@
 package com.jerrellmardis.amphitheatre.task;
 
 import android.content.Context;
-import android.content.Intent;
 import android.os.AsyncTask;
-import android.os.Bundle;
 
+import com.jerrellmardis.amphitheatre.db.BatchWriter;
 import com.jerrellmardis.amphitheatre.listeners.TaskListener;
+import com.jerrellmardis.amphitheatre.model.Source;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.jerrellmardis.amphitheatre.model.tmdb.Config;
-import com.jerrellmardis.amphitheatre.util.Constants;
+import com.jerrellmardis.amphitheatre.util.VideoUpdateBus;
 
 import java.util.List;
 
@@ -35,28 +34,39 @@ import jcifs.smb.SmbFile;
  */
 public abstract class DownloadVideoTask extends AsyncTask<Void, Video, Boolean> {
 
-    protected Config mConfig;
+    protected Source mSource;
     protected List<SmbFile> mFiles;
 
     private Context mContext;
     private TaskListener mTaskListener;
 
-    public DownloadVideoTask(Context context, Config config, List<SmbFile> files, TaskListener l) {
+    public DownloadVideoTask(Context context, Source source, List<SmbFile> files, TaskListener l) {
 
         mContext = context;
+        mSource = source;
         mFiles = files;
         mTaskListener = l;
-        mConfig = config;
+    }
+
+    /**
+     * Publishes a video once the {@link BatchWriter} has saved it, so listeners always get a
+     * video with an id.
+     */
+    protected void publishWhenSaved(final Video video) {
+        BatchWriter.getInstance().afterSave(new Runnable() {
+            @Override
+            public void run() {
+                if (video.getId() != null) {
+                    publishProgress(video);
+                }
+            }
+        });
     }
 
     @Override
     protected void onProgressUpdate(Video... values) {
         super.onProgressUpdate(values);
-        Intent i = new Intent(Constants.VIDEO_UPDATE_ACTION);
-        Bundle bundle = new Bundle();
-        bundle.putSerializable(Constants.VIDEO, values[0]);
-        i.putExtras(bundle);
-        mContext.sendBroadcast(i);
+        VideoUpdateBus.getInstance().post(values[0]);
     }
 
     @Override
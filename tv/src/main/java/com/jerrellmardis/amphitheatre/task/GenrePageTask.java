@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.task;
+
+import android.os.AsyncTask;
+
+import com.jerrellmardis.amphitheatre.db.VideoDao;
+
+import java.util.List;
+
+/**
+ * Loads one page of the movies or TV shows tagged with a genre.
+ */
+public class GenrePageTask extends AsyncTask<Void, Void, VideoDao.Page<?>> {
+
+    private String mGenre;
+    private boolean mIsMovie;
+    private int mOffset;
+    private int mLimit;
+    private Callback mCallback;
+
+    public interface Callback {
+        void onPageLoaded(List<?> items, int rowCount, int offset, int limit);
+    }
+
+    public GenrePageTask(String genre, boolean isMovie, int offset, int limit, Callback l) {
+        mGenre = genre;
+        mIsMovie = isMovie;
+        mOffset = offset;
+        mLimit = limit;
+        mCallback = l;
+    }
+
+    @Override
+    protected VideoDao.Page<?> doInBackground(Void... params) {
+        if (mIsMovie) {
+            return VideoDao.getMoviesByGenre(mGenre, mOffset, mLimit);
+        }
+        return VideoDao.getTvShowsByGenre(mGenre, mOffset, mLimit);
+    }
+
+    @Override
+    protected void onPostExecute(VideoDao.Page<?> page) {
+        if (mCallback != null) {
+            mCallback.onPageLoaded(page.getItems(), page.getRowCount(), mOffset, mLimit);
+        }
+    }
+}
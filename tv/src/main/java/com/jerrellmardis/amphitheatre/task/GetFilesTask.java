@@ -19,9 +19,10 @@ package com.jerrellmardis.amphitheatre.task;
 import android.content.Context;
 import android.os.AsyncTask;
 
-import com.jerrellmardis.amphitheatre.api.TMDbClient;
 import com.jerrellmardis.amphitheatre.listeners.TaskListener;
-import com.jerrellmardis.amphitheatre.model.tmdb.Config;
+import com.jerrellmardis.amphitheatre.model.Source;
+import com.jerrellmardis.amphitheatre.util.ArtworkCache;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
 
 import org.apache.commons.collections4.ListUtils;
 
@@ -37,12 +38,12 @@ import jcifs.smb.SmbFile;
 public class GetFilesTask extends AsyncTask<Void, Void, List<SmbFile>> implements TaskListener {
 
     private Context mContext;
+    private Source mSource;
     private String mPath;
     private String mUser;
     private String mPassword;
     private AtomicInteger mSetsProcessedCounter;
     private Callback mCallback;
-    private Config mConfig;
     private int mNumOfSets;
     private boolean mIsMovie;
 
@@ -51,14 +52,14 @@ public class GetFilesTask extends AsyncTask<Void, Void, List<SmbFile>> implement
         void failure();
     }
 
-    public GetFilesTask(Context context, String user, String password, String path, boolean isMovie,
-                        Callback l) {
+    public GetFilesTask(Context context, String user, String password, Source source, Callback l) {
 
         mContext = context;
         mUser = user;
         mPassword = password;
-        mPath = path;
-        mIsMovie = isMovie;
+        mSource = source;
+        mPath = source.getSource();
+        mIsMovie = Source.Type.MOVIE == Source.Type.valueOf(source.getType());
         mCallback = l;
 
         mSetsProcessedCounter = new AtomicInteger(0);
@@ -73,7 +74,7 @@ public class GetFilesTask extends AsyncTask<Void, Void, List<SmbFile>> implement
 
     @Override
     protected List<SmbFile> doInBackground(Void... params) {
-        mConfig = TMDbClient.getConfig();
+        ImageUtils.updateConfig(mContext);
         return new ArrayList<SmbFile>(DownloadTaskHelper.getFiles(mUser, mPassword, mPath));
     }
 
@@ -90,10 +91,10 @@ public class GetFilesTask extends AsyncTask<Void, Void, List<SmbFile>> implement
 
             for (List<SmbFile> subSet : subSets) {
                 if (mIsMovie) {
-                    new DownloadMovieTask(mContext, mConfig, subSet, this)
+                    new DownloadMovieTask(mContext, mSource, subSet, this)
                             .executeOnExecutor(THREAD_POOL_EXECUTOR);
                 } else {
-                    new DownloadTvShowTask(mContext, mConfig, subSet, this)
+                    new DownloadTvShowTask(mContext, mSource, subSet, this)
                             .executeOnExecutor(THREAD_POOL_EXECUTOR);
                 }
             }
@@ -106,8 +107,19 @@ public class GetFilesTask extends AsyncTask<Void, Void, List<SmbFile>> implement
 
     @Override
     public void taskCompleted() {
-        if (mSetsProcessedCounter.getAndIncrement() == mNumOfSets - 1 && mCallback != null) {
-            mCallback.success();
+        if (mSetsProcessedCounter.getAndIncrement() == mNumOfSets - 1) {
+            // the seasons may have changed by the time the next source is added
+            DownloadTaskHelper.clearSeasonCache();
+
+            new Thread() {
+                public void run() {
+                    ArtworkCache.prewarm(mContext);
+                }
+            }.start();
+
+            if (mCallback != null) {
+                mCallback.success();
+            }
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.task;
+
+import android.os.AsyncTask;
+
+import com.jerrellmardis.amphitheatre.db.SearchDao;
+import com.jerrellmardis.amphitheatre.model.Video;
+
+import java.util.List;
+
+/**
+ * Loads one page of full-text search results. Given a query, it runs the search first and loads
+ * the first page of its result.
+ */
+public class SearchPageTask extends AsyncTask<Void, Void, List<Video>> {
+
+    private String mQuery;
+    private SearchDao.Result mResult;
+    private int mOffset;
+    private int mLimit;
+    private Callback mCallback;
+
+    public interface Callback {
+        void onPageLoaded(SearchDao.Result result, List<Video> videos, int offset, int limit);
+    }
+
+    /**
+     * Runs a new search.
+     *
+     * @param previous the result of the previous search, used to narrow it down
+     */
+    public SearchPageTask(String query, SearchDao.Result previous, int limit, Callback l) {
+        mQuery = query;
+        mResult = previous;
+        mLimit = limit;
+        mCallback = l;
+    }
+
+    /**
+     * Loads another page of a search.
+     */
+    public SearchPageTask(SearchDao.Result result, int offset, int limit, Callback l) {
+        mResult = result;
+        mOffset = offset;
+        mLimit = limit;
+        mCallback = l;
+    }
+
+    @Override
+    protected List<Video> doInBackground(Void... params) {
+        if (mQuery != null) {
+            mResult = SearchDao.search(mQuery, mResult);
+        }
+        return SearchDao.getPage(mResult, mOffset, mLimit);
+    }
+
+    @Override
+    protected void onPostExecute(List<Video> videos) {
+        if (mCallback != null) {
+            mCallback.onPageLoaded(mResult, videos, mOffset, mLimit);
+        }
+    }
+}
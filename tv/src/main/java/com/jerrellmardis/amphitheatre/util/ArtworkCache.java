@@ -0,0 +1,237 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.util;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+
+import com.jerrellmardis.amphitheatre.db.VideoDao;
+import com.jerrellmardis.amphitheatre.model.Source;
+import com.jerrellmardis.amphitheatre.model.Video;
+import com.jerrellmardis.amphitheatre.model.VideoGroup;
+import com.jerrellmardis.amphitheatre.widget.CardPresenter;
+import com.jerrellmardis.amphitheatre.widget.TvShowsCardPresenter;
+import com.squareup.picasso.Downloader;
+import com.squareup.picasso.LruCache;
+import com.squareup.picasso.Picasso;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Picasso instances for artwork, backed by a size-bounded disk cache.
+ *
+ * Cards and backgrounds get separate memory caches so a few full-screen backgrounds can't evict
+ * every card of the home screen. Both share one disk cache in which each image is stored under
+ * its TMDb size and path (e.g. "w342_abc.jpg"), so it survives restarts and changes of the
+ * TMDb base URL. {@link #prewarm(Context)} fills it with the cards of the first rows after a
+ * scan so the home screen can paint without the network on a cold start.
+ */
+public final class ArtworkCache {
+
+    private static final String TAG = "ArtworkCache";
+
+    private static final String DIRECTORY = "artwork";
+    private static final long MAX_DISK_BYTES = 100L * 1024 * 1024;
+
+    // share of the app's heap given to each memory cache
+    private static final int CARD_MEMORY_DIVISOR = 8;
+    private static final int BACKGROUND_MEMORY_DIVISOR = 12;
+
+    // cards downloaded per row by prewarm(), roughly what fits on screen plus the next few
+    private static final int PREWARM_COUNT = 12;
+
+    private static final int CONNECT_TIMEOUT_MS = 15 * 1000;
+    private static final int READ_TIMEOUT_MS = 20 * 1000;
+
+    private static final Pattern SIZE = Pattern.compile("w\\d+|h\\d+|original");
+
+    private static Picasso sCardPicasso;
+    private static Picasso sBackgroundPicasso;
+    private static DiskCache sDiskCache;
+
+    private ArtworkCache() { }
+
+    /**
+     * Returns the Picasso instance for posters, stills and other card-sized images.
+     */
+    public static synchronized Picasso getCardPicasso(Context context) {
+        if (sCardPicasso == null) {
+            sCardPicasso = buildPicasso(context, CARD_MEMORY_DIVISOR);
+        }
+        return sCardPicasso;
+    }
+
+    /**
+     * Returns the Picasso instance for full-screen backgrounds.
+     */
+    public static synchronized Picasso getBackgroundPicasso(Context context) {
+        if (sBackgroundPicasso == null) {
+            sBackgroundPicasso = buildPicasso(context, BACKGROUND_MEMORY_DIVISOR);
+        }
+        return sBackgroundPicasso;
+    }
+
+    /**
+     * Downloads the card images of the first items of the movie and TV show rows to the disk
+     * cache. Blocks, so it must not be called from the main thread.
+     */
+    public static void prewarm(Context context) {
+        Context appContext = context.getApplicationContext();
+        List<String> urls = new ArrayList<String>();
+
+        try {
+            for (Source source : Source.listAll(Source.class)) {
+                if (Source.Type.MOVIE != Source.Type.valueOf(source.getType())) {
+                    continue;
+                }
+
+                for (Video video : VideoDao.getMoviesInSource(source.getId(), 0, PREWARM_COUNT)) {
+                    urls.add(ImageUtils.getPosterUrl(appContext, video.getCardImageUrl(),
+                            CardPresenter.CARD_WIDTH));
+                }
+            }
+
+            List<VideoGroup> tvShows = VideoDao.getTvShows();
+            for (VideoGroup group : tvShows.subList(0, Math.min(PREWARM_COUNT, tvShows.size()))) {
+                urls.add(ImageUtils.getBackdropUrl(appContext,
+                        group.getVideo().getBackgroundImageUrl(), TvShowsCardPresenter.CARD_WIDTH));
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to read the library", e);
+            return;
+        }
+
+        DiskCache diskCache = getDiskCache(appContext);
+        int downloaded = 0;
+
+        for (String url : urls) {
+            if (url == null || !url.startsWith("http")) {
+                continue;
+            }
+
+            Uri uri = Uri.parse(url);
+            String key = getKey(uri);
+            if (diskCache.contains(key)) {
+                continue;
+            }
+
+            try {
+                download(diskCache, uri, key).close();
+                downloaded++;
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to download " + url, e);
+            }
+        }
+
+        Log.d(TAG, "Prewarmed " + downloaded + " of " + urls.size() + " images");
+    }
+
+    private static Picasso buildPicasso(Context context, int memoryDivisor) {
+        Context appContext = context.getApplicationContext();
+        ActivityManager am = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+        int memoryBytes = am.getMemoryClass() * 1024 * 1024 / memoryDivisor;
+
+        return new Picasso.Builder(appContext)
+                .memoryCache(new LruCache(memoryBytes))
+                .downloader(new ArtworkDownloader(getDiskCache(appContext)))
+                .build();
+    }
+
+    static synchronized DiskCache getDiskCache(Context context) {
+        if (sDiskCache == null) {
+            sDiskCache = new DiskCache(new File(context.getCacheDir(), DIRECTORY), MAX_DISK_BYTES);
+        }
+        return sDiskCache;
+    }
+
+    /**
+     * Returns the disk cache key of an image: its TMDb size and path, or a hash of the URL for
+     * anything that isn't a TMDb image URL.
+     */
+    static String getKey(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        int count = segments.size();
+        if (count >= 2 && SIZE.matcher(segments.get(count - 2)).matches()) {
+            return segments.get(count - 2) + "_" + segments.get(count - 1);
+        }
+
+        return DiskCache.hashKey(uri.toString());
+    }
+
+    private static InputStream download(DiskCache diskCache, Uri uri, String key)
+            throws IOException {
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(uri.toString()).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+
+        try {
+            int responseCode = connection.getResponseCode();
+            if (responseCode >= 300) {
+                throw new IOException(responseCode + " " + connection.getResponseMessage());
+            }
+
+            InputStream in = connection.getInputStream();
+            try {
+                return diskCache.put(key, in);
+            } finally {
+                in.close();
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Serves network images from the disk cache, downloading and storing them on a miss.
+     */
+    private static class ArtworkDownloader implements Downloader {
+
+        private final DiskCache mDiskCache;
+
+        ArtworkDownloader(DiskCache diskCache) {
+            mDiskCache = diskCache;
+        }
+
+        @Override
+        public Response load(Uri uri, boolean localCacheOnly) throws IOException {
+            String key = getKey(uri);
+
+            InputStream cached = mDiskCache.open(key);
+            if (cached != null) {
+                return new Response(cached, true);
+            }
+
+            if (localCacheOnly) {
+                throw new IOException("Not cached: " + uri);
+            }
+
+            return new Response(download(mDiskCache, uri, key), false);
+        }
+
+        public void shutdown() { }
+    }
+}
@@ -6,34 +6,136 @@ import android.renderscript.Allocation;
 import android.renderscript.Element;
 import android.renderscript.RenderScript;
 import android.renderscript.ScriptIntrinsicBlur;
+import android.text.TextUtils;
+import android.util.Log;
 
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
 import com.squareup.picasso.Transformation;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Blurs backgrounds and keeps the blurred result on disk.
+ *
+ * The image is scaled down to 1/{@link #DOWNSCALE} of its size, blurred with a proportionally
+ * smaller radius and scaled back up, which looks the same as blurring the full image at a
+ * fraction of the cost. The small blurred bitmap is saved under its URL and radius, so
+ * {@link #load(Picasso, Context, String)} can skip the download and the blur the next time the
+ * same background is shown.
+ */
 public final class BlurTransform implements Transformation {
-    private final Context context;
 
-    public BlurTransform(Context context) {
-        this.context = context;
+    private static final String TAG = "BlurTransform";
+
+    public static final int DEFAULT_RADIUS = 20;
+
+    private static final int DOWNSCALE = 4;
+
+    private static final String DIRECTORY = "blurred";
+    private static final long MAX_DISK_BYTES = 20L * 1024 * 1024;
+    private static final int JPEG_QUALITY = 90;
+
+    private static RenderScript sRenderScript;
+    private static ScriptIntrinsicBlur sBlurScript;
+    private static DiskCache sDiskCache;
+
+    private final Context mContext;
+    private final String mUrl;
+    private final int mRadius;
+
+    public BlurTransform(Context context, String url, int radius) {
+        mContext = context.getApplicationContext();
+        mUrl = url;
+        mRadius = radius;
+    }
+
+    /**
+     * Returns a request for the blurred version of an image: the cached copy if it has been
+     * blurred before, or the image itself with this transformation applied.
+     */
+    public static RequestCreator load(Picasso picasso, Context context, String url) {
+        if (TextUtils.isEmpty(url)) {
+            return picasso.load((String) null);
+        }
+
+        File cached = getDiskCache(context).get(getKey(url, DEFAULT_RADIUS));
+        if (cached != null) {
+            return picasso.load(cached);
+        }
+
+        return picasso.load(url).transform(new BlurTransform(context, url, DEFAULT_RADIUS));
     }
 
     @Override
     public Bitmap transform(Bitmap in) {
+        int width = in.getWidth();
+        int height = in.getHeight();
+        int density = in.getDensity();
+
+        Bitmap small = Bitmap.createScaledBitmap(in,
+                Math.max(1, width / DOWNSCALE), Math.max(1, height / DOWNSCALE), true);
+        if (small != in) {
+            in.recycle();
+        }
+
+        Bitmap blurred = blur(mContext, small, Math.max(1, mRadius / DOWNSCALE));
+        small.recycle();
+
+        save(blurred);
+
+        Bitmap out = Bitmap.createScaledBitmap(blurred, width, height, true);
+        if (out != blurred) {
+            blurred.recycle();
+        }
+        out.setDensity(density);
+
+        return out;
+    }
+
+    @Override
+    public String key() {
+        return "blur(" + mRadius + ")";
+    }
+
+    private void save(Bitmap blurred) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        blurred.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, bytes);
+
+        try {
+            getDiskCache(mContext).put(getKey(mUrl, mRadius),
+                    new ByteArrayInputStream(bytes.toByteArray())).close();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save the blurred image", e);
+        }
+    }
+
+    private static Bitmap blur(Context context, Bitmap in, int radius) {
         Bitmap out = Bitmap.createBitmap(in.getWidth(), in.getHeight(), in.getConfig());
-        out.setDensity(in.getDensity());
 
-        RenderScript rs = RenderScript.create(context);
-        Allocation input = Allocation.createFromBitmap(rs, in);
-        Allocation output = Allocation.createFromBitmap(rs, out);
+        // the script is shared, so only one blur can run at a time
+        synchronized (BlurTransform.class) {
+            if (sRenderScript == null) {
+                sRenderScript = RenderScript.create(context.getApplicationContext());
+            }
+            if (sBlurScript == null) {
+                sBlurScript = ScriptIntrinsicBlur.create(sRenderScript, getElement(in, sRenderScript));
+            }
 
-        ScriptIntrinsicBlur script = ScriptIntrinsicBlur.create(rs, getElement(in, rs));
-        script.setInput(input);
-        script.setRadius(20);
-        script.forEach(output);
+            Allocation input = Allocation.createFromBitmap(sRenderScript, in);
+            Allocation output = Allocation.createFromBitmap(sRenderScript, out);
 
-        output.copyTo(out);
-        in.recycle();
+            sBlurScript.setInput(input);
+            sBlurScript.setRadius(radius);
+            sBlurScript.forEach(output);
+            output.copyTo(out);
 
-        rs.destroy();
+            input.destroy();
+            output.destroy();
+        }
 
         return out;
     }
@@ -47,8 +149,14 @@ public final class BlurTransform implements Transformation {
         }
     }
 
-    @Override
-    public String key() {
-        return "blur()";
+    private static String getKey(String url, int radius) {
+        return DiskCache.hashKey(url + "#" + radius);
+    }
+
+    private static synchronized DiskCache getDiskCache(Context context) {
+        if (sDiskCache == null) {
+            sDiskCache = new DiskCache(new File(context.getCacheDir(), DIRECTORY), MAX_DISK_BYTES);
+        }
+        return sDiskCache;
     }
 }
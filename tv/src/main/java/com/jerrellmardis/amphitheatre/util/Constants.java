@@ -24,15 +24,13 @@ public final class Constants {
     public static final String SAMPLE = "sample";
 
     public static final String IS_VIDEO = "isVideo";
-    public static final String VIDEO = "Video";
+    public static final String VIDEO_ID = "videoId";
     public static final String GENRE = "Genre";
-    public static final String VIDEO_GROUP = "VideoGroup";
 
     public static final String PREFS_USER_KEY = "user";
     public static final String PREFS_PASSWORD_KEY = "password";
 
     public static final String LIBRARY_UPDATED_ACTION = "libraryUpdatedAction";
-    public static final String VIDEO_UPDATE_ACTION = "videoUpdateAction";
 
     public static final String PALETTE_TITLE_SELECTED = "titleSelected";
     public static final String PALETTE_TITLE_UNSELECTED = "titleUnselected";
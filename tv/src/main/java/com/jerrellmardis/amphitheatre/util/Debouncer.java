@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Runs an action once a burst of calls to {@link #trigger()} has been quiet for a delay, e.g. to
+ * only load the background of the item the user stops on rather than of every item scrolled
+ * past. The action runs on the main thread.
+ */
+public class Debouncer {
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final Runnable mAction;
+    private final long mDelayMs;
+
+    public Debouncer(long delayMs, Runnable action) {
+        mDelayMs = delayMs;
+        mAction = action;
+    }
+
+    /**
+     * (Re)starts the delay, dropping any run that is still pending.
+     */
+    public void trigger() {
+        mHandler.removeCallbacks(mAction);
+        mHandler.postDelayed(mAction, mDelayMs);
+    }
+
+    /**
+     * Drops the pending run, if any.
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mAction);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.util;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * A directory of files trimmed back under its size limit, least recently used first, after
+ * every write.
+ */
+class DiskCache {
+
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final long STALE_TEMP_MS = 60 * 60 * 1000;
+
+    private final File mDirectory;
+    private final long mMaxBytes;
+    private long mSize = -1;
+
+    DiskCache(File directory, long maxBytes) {
+        mDirectory = directory;
+        mMaxBytes = maxBytes;
+    }
+
+    /**
+     * Turns an arbitrary string, e.g. a URL, into a key that is safe to use as a file name.
+     */
+    static String hashKey(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(value.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder();
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    synchronized boolean contains(String key) {
+        return new File(mDirectory, key).exists();
+    }
+
+    /**
+     * Returns a cached file and marks it as recently used, or returns null on a miss.
+     */
+    synchronized File get(String key) {
+        File file = new File(mDirectory, key);
+        if (!file.exists()) {
+            return null;
+        }
+
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * Opens a cached file and marks it as recently used, or returns null on a miss.
+     */
+    synchronized InputStream open(String key) throws IOException {
+        File file = get(key);
+        return file != null ? new FileInputStream(file) : null;
+    }
+
+    /**
+     * Copies a stream into the cache and opens the stored file.
+     */
+    InputStream put(String key, InputStream in) throws IOException {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            throw new IOException("Unable to create " + mDirectory);
+        }
+
+        // written outside the lock so downloads don't block each other
+        File temp = File.createTempFile(key, TEMP_SUFFIX, mDirectory);
+        try {
+            OutputStream out = new FileOutputStream(temp);
+            try {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, count);
+                }
+            } finally {
+                out.close();
+            }
+
+            synchronized (this) {
+                File file = new File(mDirectory, key);
+                long replaced = file.length();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Unable to write " + file);
+                }
+
+                ensureSize();
+                mSize += file.length() - replaced;
+                trim();
+
+                return new FileInputStream(file);
+            }
+        } finally {
+            temp.delete();
+        }
+    }
+
+    private void ensureSize() {
+        if (mSize >= 0) {
+            return;
+        }
+
+        mSize = 0;
+        File[] files = mDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.getName().endsWith(TEMP_SUFFIX)) {
+                    mSize += file.length();
+                }
+            }
+        }
+    }
+
+    private void trim() {
+        if (mSize <= mMaxBytes) {
+            return;
+        }
+
+        File[] files = mDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long l = lhs.lastModified();
+                long r = rhs.lastModified();
+                return l < r ? -1 : (l == r ? 0 : 1);
+            }
+        });
+
+        // trim a little further than needed so the next few writes don't trim again
+        long target = mMaxBytes * 9 / 10;
+        long staleTime = System.currentTimeMillis() - STALE_TEMP_MS;
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                // left over from an interrupted write
+                if (file.lastModified() < staleTime) {
+                    file.delete();
+                }
+                continue;
+            }
+            if (mSize <= target) {
+                break;
+            }
+
+            long length = file.length();
+            if (file.delete()) {
+                mSize -= length;
+            }
+        }
+    }
+}
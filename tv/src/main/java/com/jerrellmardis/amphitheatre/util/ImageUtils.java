@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.util;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.jerrellmardis.amphitheatre.api.TMDbClient;
+import com.jerrellmardis.amphitheatre.model.tmdb.Config;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds TMDb image URLs from the image paths stored with each video.
+ *
+ * Only the path (e.g. "/abc.jpg") is stored, so the size is picked when the image is displayed:
+ * the smallest size TMDb offers that is at least as wide as the view, instead of always
+ * downloading the original. The base URL and the available sizes come from the TMDb
+ * configuration, which is saved on every library scan.
+ */
+public final class ImageUtils {
+
+    private static final String TAG = "ImageUtils";
+
+    private static final String PREFS_NAME = "tmdb_images";
+    private static final String BASE_URL_KEY = "baseUrl";
+    private static final String POSTER_SIZES_KEY = "posterSizes";
+    private static final String BACKDROP_SIZES_KEY = "backdropSizes";
+    private static final String STILL_SIZES_KEY = "stillSizes";
+
+    private static final String ORIGINAL = "original";
+
+    // used until the configuration has been downloaded once
+    private static final String DEFAULT_BASE_URL = "http://image.tmdb.org/t/p/";
+    private static final List<String> DEFAULT_POSTER_SIZES =
+            Arrays.asList("w92", "w154", "w185", "w342", "w500", "w780", ORIGINAL);
+    private static final List<String> DEFAULT_BACKDROP_SIZES =
+            Arrays.asList("w300", "w780", "w1280", ORIGINAL);
+    private static final List<String> DEFAULT_STILL_SIZES =
+            Arrays.asList("w92", "w185", "w300", ORIGINAL);
+
+    private static volatile Config.Images sImages;
+
+    private ImageUtils() { }
+
+    /**
+     * Downloads the TMDb image configuration and saves it for later lookups. Failures are logged
+     * and the previously saved configuration stays in use. Blocks, so it must not be called from
+     * the main thread.
+     */
+    public static void updateConfig(Context context) {
+        try {
+            Config config = TMDbClient.getConfig();
+            if (config != null && config.getImages() != null) {
+                saveImages(context, config.getImages());
+            }
+        } catch (Exception e) {
+            Log.e(TAG, "Unable to download the TMDb configuration", e);
+        }
+    }
+
+    public static String getPosterUrl(Context context, String path, int width) {
+        Config.Images images = getImages(context);
+        return buildUrl(images, images.getPoster_sizes(), path, width);
+    }
+
+    public static String getBackdropUrl(Context context, String path, int width) {
+        Config.Images images = getImages(context);
+        return buildUrl(images, images.getBackdrop_sizes(), path, width);
+    }
+
+    public static String getStillUrl(Context context, String path, int width) {
+        Config.Images images = getImages(context);
+        return buildUrl(images, images.getStill_sizes(), path, width);
+    }
+
+    private static String buildUrl(Config.Images images, List<String> sizes, String path,
+                                   int width) {
+
+        if (TextUtils.isEmpty(path)) {
+            return null;
+        }
+
+        // already a full URL, e.g. from a library that hasn't been migrated
+        if (!path.startsWith("/")) {
+            return path;
+        }
+
+        return images.getBase_url() + selectSize(sizes, width) + path;
+    }
+
+    /**
+     * Returns the smallest "w" size that is at least {@code width} pixels wide, or "original" if
+     * none is.
+     */
+    private static String selectSize(List<String> sizes, int width) {
+        String best = null;
+        int bestWidth = Integer.MAX_VALUE;
+
+        for (String size : sizes) {
+            if (!size.startsWith("w")) {
+                continue;
+            }
+
+            int sizeWidth;
+            try {
+                sizeWidth = Integer.parseInt(size.substring(1));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+
+            if (sizeWidth >= width && sizeWidth < bestWidth) {
+                best = size;
+                bestWidth = sizeWidth;
+            }
+        }
+
+        return best != null ? best : ORIGINAL;
+    }
+
+    private static Config.Images getImages(Context context) {
+        Config.Images images = sImages;
+        if (images == null) {
+            images = loadImages(context);
+            sImages = images;
+        }
+        return images;
+    }
+
+    private static Config.Images loadImages(Context context) {
+        SharedPreferences prefs = context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+
+        Config.Images images = new Config.Images();
+        images.setBase_url(prefs.getString(BASE_URL_KEY, DEFAULT_BASE_URL));
+        images.setPoster_sizes(readSizes(prefs, POSTER_SIZES_KEY, DEFAULT_POSTER_SIZES));
+        images.setBackdrop_sizes(readSizes(prefs, BACKDROP_SIZES_KEY, DEFAULT_BACKDROP_SIZES));
+        images.setStill_sizes(readSizes(prefs, STILL_SIZES_KEY, DEFAULT_STILL_SIZES));
+        return images;
+    }
+
+    private static void saveImages(Context context, Config.Images images) {
+        Config.Images current = loadImages(context);
+        if (!TextUtils.isEmpty(images.getBase_url())) {
+            current.setBase_url(images.getBase_url());
+        }
+        if (images.getPoster_sizes() != null && !images.getPoster_sizes().isEmpty()) {
+            current.setPoster_sizes(images.getPoster_sizes());
+        }
+        if (images.getBackdrop_sizes() != null && !images.getBackdrop_sizes().isEmpty()) {
+            current.setBackdrop_sizes(images.getBackdrop_sizes());
+        }
+        if (images.getStill_sizes() != null && !images.getStill_sizes().isEmpty()) {
+            current.setStill_sizes(images.getStill_sizes());
+        }
+
+        context.getApplicationContext()
+                .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE)
+                .edit()
+                .putString(BASE_URL_KEY, current.getBase_url())
+                .putString(POSTER_SIZES_KEY, TextUtils.join(",", current.getPoster_sizes()))
+                .putString(BACKDROP_SIZES_KEY, TextUtils.join(",", current.getBackdrop_sizes()))
+                .putString(STILL_SIZES_KEY, TextUtils.join(",", current.getStill_sizes()))
+                .apply();
+
+        sImages = current;
+    }
+
+    private static List<String> readSizes(SharedPreferences prefs, String key,
+                                          List<String> defaultSizes) {
+
+        String sizes = prefs.getString(key, null);
+        if (TextUtils.isEmpty(sizes)) {
+            return defaultSizes;
+        }
+        return Arrays.asList(TextUtils.split(sizes, ","));
+    }
+}
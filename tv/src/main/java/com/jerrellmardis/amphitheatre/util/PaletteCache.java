@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.util;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.AsyncTask;
+import android.support.v7.graphics.Palette;
+import android.text.TextUtils;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * The palette colors of each card image, computed once per image.
+ *
+ * Colors are kept in memory by image URL so focus changes only need a lookup, and saved next to
+ * the image in the {@link ArtworkCache} disk cache so they survive restarts and are trimmed
+ * together with the image.
+ */
+public final class PaletteCache {
+
+    private static final String TAG = "PaletteCache";
+
+    private static final String SUFFIX = ".palette";
+    private static final int MAX_ENTRIES = 1000;
+
+    // palettes are computed from a copy no larger than this, which is plenty for a few swatches
+    private static final int MAX_DIMENSION = 100;
+
+    private static final LruCache<String, Colors> sColors = new LruCache<String, Colors>(MAX_ENTRIES);
+
+    public interface Callback {
+        void onColorsLoaded(String url, Colors colors);
+    }
+
+    /**
+     * The swatch colors of one image, indexed by {@link Enums.PaletteColor}.
+     */
+    public static final class Colors {
+
+        // swatch colors are always opaque, so 0 marks a missing swatch
+        private final int[] mRgb = new int[Enums.PaletteColor.values().length];
+
+        private Colors() { }
+
+        private static Colors from(Palette palette) {
+            Colors colors = new Colors();
+            colors.set(Enums.PaletteColor.VIBRANT, palette.getVibrantSwatch());
+            colors.set(Enums.PaletteColor.LIGHTVIBRANT, palette.getLightVibrantSwatch());
+            colors.set(Enums.PaletteColor.DARKVIBRANT, palette.getDarkVibrantSwatch());
+            colors.set(Enums.PaletteColor.MUTED, palette.getMutedSwatch());
+            colors.set(Enums.PaletteColor.LIGHTMUTED, palette.getLightMutedSwatch());
+            colors.set(Enums.PaletteColor.DARKMUTED, palette.getDarkMutedSwatch());
+            return colors;
+        }
+
+        private void set(Enums.PaletteColor color, Palette.Swatch swatch) {
+            mRgb[color.ordinal()] = swatch != null ? swatch.getRgb() : 0;
+        }
+
+        /**
+         * Returns the color of a swatch, or the default color if the image has no such swatch or
+         * no swatch is given.
+         */
+        public int getColor(Enums.PaletteColor color, int defaultColor) {
+            if (color == null || mRgb[color.ordinal()] == 0) {
+                return defaultColor;
+            }
+            return mRgb[color.ordinal()];
+        }
+
+        private String serialize() {
+            StringBuilder sb = new StringBuilder();
+            for (int rgb : mRgb) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(Integer.toHexString(rgb));
+            }
+            return sb.toString();
+        }
+
+        private static Colors deserialize(String value) {
+            String[] parts = value.trim().split(",");
+            Colors colors = new Colors();
+            if (parts.length != colors.mRgb.length) {
+                return null;
+            }
+
+            try {
+                for (int i = 0; i < parts.length; i++) {
+                    colors.mRgb[i] = (int) Long.parseLong(parts[i], 16);
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            return colors;
+        }
+    }
+
+    private PaletteCache() { }
+
+    /**
+     * Returns the colors of an image if they are in memory. Cheap enough for the main thread.
+     */
+    public static Colors get(String url) {
+        return TextUtils.isEmpty(url) ? null : sColors.get(url);
+    }
+
+    /**
+     * Reads the colors of an image from disk or computes them from the loaded bitmap, then calls
+     * back on the main thread. The bitmap must not be recycled while this runs.
+     */
+    public static void load(Context context, final String url, final Bitmap bitmap,
+                            final Callback callback) {
+
+        final Context appContext = context.getApplicationContext();
+
+        new AsyncTask<Void, Void, Colors>() {
+            @Override
+            protected Colors doInBackground(Void... params) {
+                Colors colors = read(appContext, url);
+                if (colors == null) {
+                    colors = generate(bitmap);
+                    write(appContext, url, colors);
+                }
+                return colors;
+            }
+
+            @Override
+            protected void onPostExecute(Colors colors) {
+                if (!TextUtils.isEmpty(url)) {
+                    sColors.put(url, colors);
+                }
+                callback.onColorsLoaded(url, colors);
+            }
+        }.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+    }
+
+    private static Colors generate(Bitmap bitmap) {
+        int maxDimension = Math.max(bitmap.getWidth(), bitmap.getHeight());
+        if (maxDimension <= MAX_DIMENSION) {
+            return Colors.from(Palette.generate(bitmap));
+        }
+
+        float scale = MAX_DIMENSION / (float) maxDimension;
+        Bitmap small = Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, Math.round(bitmap.getWidth() * scale)),
+                Math.max(1, Math.round(bitmap.getHeight() * scale)), false);
+        try {
+            return Colors.from(Palette.generate(small));
+        } finally {
+            if (small != bitmap) {
+                small.recycle();
+            }
+        }
+    }
+
+    private static String getDiskKey(String url) {
+        return ArtworkCache.getKey(Uri.parse(url)) + SUFFIX;
+    }
+
+    private static Colors read(Context context, String url) {
+        if (TextUtils.isEmpty(url)) {
+            return null;
+        }
+
+        try {
+            InputStream in = ArtworkCache.getDiskCache(context).open(getDiskKey(url));
+            if (in == null) {
+                return null;
+            }
+
+            try {
+                String line = new BufferedReader(new InputStreamReader(in, "UTF-8")).readLine();
+                return line != null ? Colors.deserialize(line) : null;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read the palette of " + url, e);
+            return null;
+        }
+    }
+
+    private static void write(Context context, String url, Colors colors) {
+        if (TextUtils.isEmpty(url)) {
+            return;
+        }
+
+        try {
+            byte[] bytes = colors.serialize().getBytes("UTF-8");
+            ArtworkCache.getDiskCache(context).put(getDiskKey(url),
+                    new ByteArrayInputStream(bytes)).close();
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to save the palette of " + url, e);
+        }
+    }
+}
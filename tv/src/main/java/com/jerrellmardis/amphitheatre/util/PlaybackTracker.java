@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.util;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.jerrellmardis.amphitheatre.db.VideoDao;
+import com.jerrellmardis.amphitheatre.model.Video;
+import com.jerrellmardis.amphitheatre.server.Streamer;
+import com.jerrellmardis.amphitheatre.service.RecommendationsService;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns the requests a player makes to the stream server into a resume position for a video.
+ *
+ * Players resume and seek by requesting the file from a byte offset, which is the closest thing
+ * to a playback position the server gets to see. Players also read the end of a file for its index
+ * (an MP4 moov atom, MKV cues) and then go back to read it from the start. So an offset only
+ * counts once no other request followed it for a few seconds, and a read from the start within
+ * that time discards it. Positions are written at most every half a minute, so a player seeking
+ * around doesn't restart the recommendations for every request.
+ */
+final class PlaybackTracker implements Streamer.OnStreamListener {
+
+    private static final long PROBE_WINDOW_MS = 5 * 1000;
+    private static final long WRITE_INTERVAL_MS = 30 * 1000;
+    private static final int NO_POSITION = -1;
+
+    // the stream server calls back on its request threads; the writes happen in order on this one
+    private static final ScheduledExecutorService sExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    private final Context mContext;
+    private final Video mVideo;
+
+    private int mPendingPercent = NO_POSITION;
+    private long mLastRequestTime;
+    private long mLastWriteTime;
+    private boolean mIsPlayed;
+    private ScheduledFuture<?> mWrite;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            int percent;
+            synchronized (PlaybackTracker.this) {
+                mWrite = null;
+                percent = mPendingPercent;
+                mPendingPercent = NO_POSITION;
+                if (percent == NO_POSITION) {
+                    return;
+                }
+                mLastWriteTime = SystemClock.elapsedRealtime();
+            }
+
+            VideoDao.setResumePercent(mVideo.getVideoUrl(), percent);
+            RecommendationsService.update(mContext);
+        }
+    };
+
+    PlaybackTracker(Context context, Video video) {
+        mContext = context.getApplicationContext();
+        mVideo = video;
+    }
+
+    @Override
+    public synchronized void onStream(int percentStreamed) {
+        mPendingPercent = percentStreamed;
+        mLastRequestTime = SystemClock.elapsedRealtime();
+
+        // a later request replaces this one, so the write waits for the requests to settle
+        if (mWrite != null) {
+            mWrite.cancel(false);
+        }
+        long delay = Math.max(PROBE_WINDOW_MS,
+                mLastWriteTime + WRITE_INTERVAL_MS - mLastRequestTime);
+        mWrite = sExecutor.schedule(mWriteRunnable, delay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void onPlay() {
+        // the offset requested just before was a probe of the end of the file
+        if (mPendingPercent != NO_POSITION &&
+                SystemClock.elapsedRealtime() - mLastRequestTime < PROBE_WINDOW_MS) {
+            mPendingPercent = NO_POSITION;
+        }
+
+        // players read from the start several times per playback
+        if (mIsPlayed) {
+            return;
+        }
+        mIsPlayed = true;
+
+        mVideo.setWatched(true);
+        sExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                VideoDao.setPlayed(mVideo.getVideoUrl());
+                RecommendationsService.update(mContext);
+            }
+        });
+    }
+}
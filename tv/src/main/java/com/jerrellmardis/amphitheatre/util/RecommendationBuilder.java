@@ -25,15 +25,12 @@ import android.os.Bundle;
 import android.support.v4.app.NotificationCompat;
 
 import com.jerrellmardis.amphitheatre.R;
-import com.squareup.picasso.Picasso;
+import com.jerrellmardis.amphitheatre.widget.CardPresenter;
 
 import java.io.IOException;
 
 public class RecommendationBuilder {
 
-    private static int CARD_WIDTH = 117;
-    private static int CARD_HEIGHT = 176;
-
     public static final String EXTRA_BACKGROUND_IMAGE_URL = "background_image_url";
 
     private Context mContext;
@@ -42,6 +39,7 @@ public class RecommendationBuilder {
     private int mId;
     private int mPriority;
     private int mSmallIcon;
+    private int mProgress;
     private String mTitle;
     private String mDescription;
     private String mImageUri;
@@ -60,6 +58,10 @@ public class RecommendationBuilder {
         return this;
     }
 
+    public int getId() {
+        return mId;
+    }
+
     public RecommendationBuilder setPriority(int priority) {
         mPriority = priority;
         return this;
@@ -90,6 +92,14 @@ public class RecommendationBuilder {
         return this;
     }
 
+    /**
+     * Shows how much of the video has been watched, in percent. Nothing is shown for 0.
+     */
+    public RecommendationBuilder setProgress(int percent) {
+        mProgress = percent;
+        return this;
+    }
+
     public RecommendationBuilder setSmallIcon(int resourceId) {
         mSmallIcon = resourceId;
         return this;
@@ -106,28 +116,34 @@ public class RecommendationBuilder {
             extras.putString(EXTRA_BACKGROUND_IMAGE_URL, mBackgroundUri);
         }
 
-        Bitmap image = Picasso.with(mContext)
+        // the size and crop CardPresenter binds, so a poster shown on a card comes from the memory
+        // cache; the notification scales it down to the large icon size
+        Bitmap image = ArtworkCache.getCardPicasso(mContext)
                 .load(mImageUri)
-                .resize(Utils.dpToPx(CARD_WIDTH, mContext), Utils.dpToPx(CARD_HEIGHT, mContext))
+                .resize(CardPresenter.CARD_WIDTH, CardPresenter.CARD_HEIGHT)
+                .centerCrop()
                 .get();
 
-        Notification notification = new NotificationCompat.BigPictureStyle(
-                new NotificationCompat.Builder(mContext)
-                        .setContentTitle(mTitle)
-                        .setContentText(mDescription)
-                        .setPriority(mPriority)
-                        .setLocalOnly(true)
-                        .setOngoing(true)
-                        .setColor(mContext.getResources().getColor(R.color.fastlane_background))
-                        .setCategory(Notification.CATEGORY_RECOMMENDATION)
-                        .setLargeIcon(image)
-                        .setSmallIcon(mSmallIcon)
-                        .setContentIntent(mIntent)
-                        .setExtras(extras))
-                .build();
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(mContext)
+                .setContentTitle(mTitle)
+                .setContentText(mDescription)
+                .setPriority(mPriority)
+                .setLocalOnly(true)
+                .setOngoing(true)
+                .setColor(mContext.getResources().getColor(R.color.fastlane_background))
+                .setCategory(Notification.CATEGORY_RECOMMENDATION)
+                .setLargeIcon(image)
+                .setSmallIcon(mSmallIcon)
+                .setContentIntent(mIntent)
+                .setExtras(extras);
+
+        if (mProgress > 0) {
+            builder.setProgress(100, mProgress, false);
+        }
+
+        Notification notification = new NotificationCompat.BigPictureStyle(builder).build();
 
         mNotificationManager.notify(mId, notification);
-        mNotificationManager = null;
 
         return notification;
     }
@@ -72,7 +72,7 @@ public class SecurePreferences implements SharedPreferences {
 	private static final String PROVIDER = "BC";
 
 	private static SharedPreferences sFile;
-	private static byte[] sKey;
+	private static volatile byte[] sKey;
 	private static boolean sLoggingEnabled = false;
 	private static final String TAG = SecurePreferences.class.getName();
 
@@ -83,6 +83,18 @@ public class SecurePreferences implements SharedPreferences {
 	 *            the caller's context
 	 */
 	public SecurePreferences(Context context) {
+		SecurePreferences.init(context);
+	}
+
+	/**
+	 * Loads the encryption key once per process. Deriving the name it is
+	 * stored under runs {@link #ITERATIONS} rounds of PBKDF2, so later
+	 * instances reuse it.
+	 */
+	private static synchronized void init(Context context) {
+		if (SecurePreferences.sKey != null) {
+			return;
+		}
 		// Proxy design pattern
 		if (SecurePreferences.sFile == null) {
 			SecurePreferences.sFile = PreferenceManager
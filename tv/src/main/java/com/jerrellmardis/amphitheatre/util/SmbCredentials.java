@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.util;
+
+import android.content.Context;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+
+import jcifs.smb.NtlmPasswordAuthentication;
+
+/**
+ * The user name and password of the shares, shared by the library scanner and the streamer.
+ *
+ * They are decrypted from {@link SecurePreferences} the first time they're needed and kept for
+ * the life of the process, so looking them up on the play path costs nothing once the library
+ * screen has loaded.
+ */
+public final class SmbCredentials {
+
+    private static final AtomicReference<NtlmPasswordAuthentication> sAuth =
+            new AtomicReference<NtlmPasswordAuthentication>();
+
+    // encrypting derives the key the first time, so saves are written in order off the main thread
+    private static final ExecutorService sWriteExecutor = Executors.newSingleThreadExecutor();
+
+    private SmbCredentials() { }
+
+    /**
+     * Returns the saved credentials. The first call decrypts them, so it should be made off the
+     * main thread.
+     */
+    public static NtlmPasswordAuthentication getAuth(Context context) {
+        NtlmPasswordAuthentication auth = sAuth.get();
+        if (auth != null) {
+            return auth;
+        }
+
+        SecurePreferences prefs = new SecurePreferences(context.getApplicationContext());
+        auth = new NtlmPasswordAuthentication("",
+                prefs.getString(Constants.PREFS_USER_KEY, ""),
+                prefs.getString(Constants.PREFS_PASSWORD_KEY, ""));
+
+        // credentials saved while these were being decrypted win
+        sAuth.compareAndSet(null, auth);
+        return sAuth.get();
+    }
+
+    /**
+     * Uses new credentials for every later lookup and saves them in the background. Can be
+     * called from the main thread.
+     */
+    public static void save(Context context, final String user, final String password) {
+        sAuth.set(new NtlmPasswordAuthentication("", user, password));
+
+        final Context appContext = context.getApplicationContext();
+        sWriteExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                new SecurePreferences(appContext).edit()
+                        .putString(Constants.PREFS_USER_KEY, user)
+                        .putString(Constants.PREFS_PASSWORD_KEY, password)
+                        .apply();
+            }
+        });
+    }
+}
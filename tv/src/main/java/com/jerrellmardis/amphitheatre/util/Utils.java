@@ -27,7 +27,6 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Point;
 import android.os.Environment;
-import android.support.v7.graphics.Palette;
 import android.util.Log;
 import android.view.Display;
 import android.view.View;
@@ -37,12 +36,9 @@ import android.widget.Toast;
 import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.service.LibraryUpdateService;
 
-import org.apache.commons.lang3.StringUtils;
-
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.lang.reflect.Method;
 import java.nio.channels.FileChannel;
 
 /**
@@ -144,30 +140,69 @@ public final class Utils {
         return result;
     }
 
+    /**
+     * Converts a TMDb "yyyy-MM-dd" date to the number of days since 1970-01-01, so dates can be
+     * stored and sorted as plain integers.
+     *
+     * @param date a date in "yyyy-MM-dd" format, as TMDb returns it
+     * @return the epoch day, or null if the date is missing or malformed
+     */
+    public static Long toEpochDay(String date) {
+        if (date == null) {
+            return null;
+        }
+
+        String[] parts = date.trim().split("-");
+        if (parts.length != 3) {
+            return null;
+        }
+
+        long year;
+        int month;
+        int day;
+        try {
+            year = Long.parseLong(parts[0]);
+            month = Integer.parseInt(parts[1]);
+            day = Integer.parseInt(parts[2]);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        if (month < 1 || month > 12 || day < 1 || day > 31) {
+            return null;
+        }
+
+        // days from the civil calendar, counting years from March so leap days come last
+        if (month <= 2) {
+            year--;
+        }
+        long era = (year >= 0 ? year : year - 399) / 400;
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
     public static int dpToPx(int dp, Context ctx) {
         float density = ctx.getResources().getDisplayMetrics().density;
         return Math.round((float) dp * density);
     }
 
     public static void scheduleLibraryUpdateService(Context context) {
-        if (isAlarmAlreadySet(context)) return;
-
-        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        Intent intent = new Intent(context, LibraryUpdateService.class);
-        PendingIntent alarmIntent = PendingIntent.getService(context, LIBRARY_UPDATE_REQUEST_CODE,
-                intent, 0);
-
-        alarmManager.setInexactRepeating(AlarmManager.ELAPSED_REALTIME_WAKEUP,
-                AlarmManager.INTERVAL_HALF_HOUR,
-                AlarmManager.INTERVAL_HALF_HOUR,
-                alarmIntent);
+        cancelLibraryUpdateAlarm(context);
+        LibraryUpdateService.schedule(context);
     }
 
-    private static boolean isAlarmAlreadySet(Context context) {
+    // earlier versions crawled the library from an alarm every half hour
+    private static void cancelLibraryUpdateAlarm(Context context) {
         Intent intent = new Intent(context, LibraryUpdateService.class);
         PendingIntent pi = PendingIntent.getService(context, LIBRARY_UPDATE_REQUEST_CODE,
                 intent, PendingIntent.FLAG_NO_CREATE);
-        return pi != null;
+        if (pi == null) return;
+
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        alarmManager.cancel(pi);
+        pi.cancel();
     }
 
     public static void backupDatabase(Context ctx) {
@@ -206,34 +241,6 @@ public final class Utils {
         valueAnimator.start();
     }
 
-    public static int getPaletteColor(Palette palette, String colorType, int defaultColor) {
-        if (colorType.equals("")) {
-            return defaultColor;
-        }
-
-        Method[] paletteMethods = palette.getClass().getDeclaredMethods();
-
-        for(Method method : paletteMethods) {
-            if (StringUtils.containsIgnoreCase(method.getName(), colorType)) {
-                try {
-                    Palette.Swatch item = (Palette.Swatch)method.invoke(palette);
-                    if (item != null) {
-                        return item.getRgb();
-                    }
-                    else {
-                        return defaultColor;
-                    }
-                }
-                catch(Exception ex) {
-                    Log.d("getPaletteColor", ex.getMessage());
-                    return defaultColor;
-                }
-            }
-        }
-
-        return defaultColor;
-    }
-
     public static void checkPrefs(SharedPreferences sharedPrefs) {
         SharedPreferences.Editor editor = sharedPrefs.edit();
 
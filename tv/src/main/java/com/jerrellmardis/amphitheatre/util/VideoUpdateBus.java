@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.util;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.jerrellmardis.amphitheatre.model.Video;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * In-process bus for videos found by a running scan.
+ *
+ * Videos can be posted from any thread. They are collected and delivered to the listeners on the
+ * main thread in batches, at most once every {@link #BATCH_INTERVAL_MS}, so the UI can apply a
+ * whole batch at once instead of handling a broadcast per file.
+ */
+public final class VideoUpdateBus {
+
+    private static final long BATCH_INTERVAL_MS = 250;
+
+    private static VideoUpdateBus sInstance;
+
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> mListeners = new CopyOnWriteArrayList<Listener>();
+    private List<Video> mPending = new ArrayList<Video>();
+    private boolean mIsDispatchScheduled;
+
+    public interface Listener {
+        void onVideosAdded(List<Video> videos);
+    }
+
+    private final Runnable mDispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            List<Video> videos;
+            synchronized (VideoUpdateBus.this) {
+                videos = mPending;
+                mPending = new ArrayList<Video>();
+                mIsDispatchScheduled = false;
+            }
+
+            for (Listener listener : mListeners) {
+                listener.onVideosAdded(videos);
+            }
+        }
+    };
+
+    private VideoUpdateBus() { }
+
+    public static synchronized VideoUpdateBus getInstance() {
+        if (sInstance == null) {
+            sInstance = new VideoUpdateBus();
+        }
+        return sInstance;
+    }
+
+    public void register(Listener listener) {
+        mListeners.add(listener);
+    }
+
+    public void unregister(Listener listener) {
+        mListeners.remove(listener);
+    }
+
+    public synchronized void post(Video video) {
+        mPending.add(video);
+
+        if (!mIsDispatchScheduled) {
+            mIsDispatchScheduled = true;
+            mHandler.postDelayed(mDispatchRunnable, BATCH_INTERVAL_MS);
+        }
+    }
+}
@@ -18,14 +18,13 @@ package com.jerrellmardis.amphitheatre.util;
 
 import android.app.Activity;
 import android.content.ActivityNotFoundException;
+import android.content.Context;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 
 import com.jerrellmardis.amphitheatre.model.Video;
 import com.jerrellmardis.amphitheatre.server.Streamer;
-import com.orm.query.Condition;
-import com.orm.query.Select;
 
 import java.io.File;
 import java.lang.ref.WeakReference;
@@ -52,45 +51,20 @@ public class VideoUtils {
     private static final char UNIX_SEPARATOR = '/';
     private static final char WINDOWS_SEPARATOR = '\\';
 
+    // poster width handed to external players that show a cover
+    private static final int COVER_WIDTH = 500;
+
     public static void playVideo(WeakReference<Activity> ref, final Video video) {
         final Activity activity = ref.get();
 
         if (activity != null) {
             final Streamer streamer = Streamer.getInstance();
-            streamer.setOnStreamListener(new Streamer.OnStreamListener() {
-                @Override
-                public void onStream(int percentStreamed) {
-                    // FIXME Ideally, the watch status should only get set once the server has streamed a certain % of the video.
-                    // Unfortunately a partial stream is only set when a user has requested to play a partially watched video.
-                }
-
-                @Override
-                public void onPlay() {
-                    video.setWatched(true);
-
-                    List<Video> videos = Select
-                            .from(Video.class)
-                            .where(Condition.prop("video_url").eq(video.getVideoUrl()))
-                            .list();
-
-                    if (!videos.isEmpty()) {
-                        Video vid = videos.get(0);
-                        if (!vid.isWatched()) {
-                            vid.setWatched(true);
-                            vid.save();
-                        }
-                    }
-                }
-            });
+            streamer.setOnStreamListener(new PlaybackTracker(activity, video));
 
             new Thread() {
                 public void run() {
                     try {
-                        SecurePreferences preferences = new SecurePreferences(activity.getApplicationContext());
-
-                        String user = preferences.getString(Constants.PREFS_USER_KEY, "");
-                        String pass = preferences.getString(Constants.PREFS_PASSWORD_KEY, "");
-                        NtlmPasswordAuthentication auth = new NtlmPasswordAuthentication("", user, pass);
+                        NtlmPasswordAuthentication auth = SmbCredentials.getAuth(activity);
                         SmbFile file = new SmbFile(video.getVideoUrl(), auth);
                         streamer.setStreamSrc(file, null);
 
@@ -195,43 +169,47 @@ public class VideoUtils {
         return Math.max(lastUnixPos, lastWindowsPos);
     }
 
-    public static Intent getVideoIntent(Video video) {
-        return getVideoIntent(video.getVideoUrl().replace("smb", "http"), "video/*", video);
+    public static Intent getVideoIntent(Context context, Video video) {
+        return getVideoIntent(context, video.getVideoUrl().replace("smb", "http"), "video/*", video);
     }
 
-    public static Intent getVideoIntent(String fileUrl, String mimeType, Video video) {
+    public static Intent getVideoIntent(Context context, String fileUrl, String mimeType,
+                                        Video video) {
+
         if (fileUrl.startsWith("http")) {
-            return getVideoIntent(Uri.parse(fileUrl), mimeType, video);
+            return getVideoIntent(context, Uri.parse(fileUrl), mimeType, video);
         }
 
         Intent videoIntent = new Intent(Intent.ACTION_VIEW);
         videoIntent.setDataAndType(Uri.fromFile(new File(fileUrl)), mimeType);
-        videoIntent.putExtras(getVideoIntentBundle(video));
+        videoIntent.putExtras(getVideoIntentBundle(context, video));
 
         return videoIntent;
     }
 
-    public static Intent getVideoIntent(Uri file, String mimeType, Video video) {
+    public static Intent getVideoIntent(Context context, Uri file, String mimeType, Video video) {
         Intent videoIntent = new Intent(Intent.ACTION_VIEW);
         videoIntent.setDataAndType(file, mimeType);
-        videoIntent.putExtras(getVideoIntentBundle(video));
+        videoIntent.putExtras(getVideoIntentBundle(context, video));
 
         return videoIntent;
     }
 
-    private static Bundle getVideoIntentBundle(Video video) {
+    private static Bundle getVideoIntentBundle(Context context, Video video) {
         Bundle b = new Bundle();
 
+        String cover = ImageUtils.getPosterUrl(context, video.getCardImageUrl(), COVER_WIDTH);
+
         String title = video.getName();
 
         if (video.getMovie() != null) {
             b.putString("plot", video.getMovie().getOverview());
             b.putString("date", video.getMovie().getReleaseDate());
-            b.putString("cover", video.getCardImageUrl());
+            b.putString("cover", cover);
         } else if (video.getTvShow() != null) {
             b.putString("plot", video.getTvShow().getOverview());
             b.putString("date", video.getTvShow().getFirstAirDate());
-            b.putString("cover", video.getCardImageUrl());
+            b.putString("cover", cover);
         }
 
         b.putString("title", title);
@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.jerrellmardis.amphitheatre.widget;
+
+import android.content.Context;
+import android.support.v17.leanback.widget.ArrayObjectAdapter;
+import android.support.v17.leanback.widget.HeaderItem;
+import android.support.v17.leanback.widget.ListRow;
+import android.support.v17.leanback.widget.Presenter;
+import android.text.TextUtils;
+
+import com.jerrellmardis.amphitheatre.R;
+import com.jerrellmardis.amphitheatre.model.Source;
+import com.jerrellmardis.amphitheatre.model.Video;
+import com.jerrellmardis.amphitheatre.model.VideoGroup;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * In-memory index over the rows of the browse screen.
+ *
+ * Rows are looked up by header, movie sources by id and TV show groups by show name, so adding a
+ * video never scans the rows or their items. The same model is used to build the initial rows and
+ * to apply videos found by a running scan.
+ *
+ * The "All ..." movie rows are {@link PagedVideoAdapter}s that read their movies from the database,
+ * so adding a movie only refreshes its source's row.
+ */
+public class BrowseModel {
+
+    private static final Comparator<Video> VIDEO_NAME_COMPARATOR = new Comparator<Video>() {
+        @Override
+        public int compare(Video o1, Video o2) {
+            if (o2.getName() == null) {
+                return (o1.getName() == null) ? 0 : -1;
+            }
+            if (o1.getName() == null) {
+                return 1;
+            }
+            return o1.getName().toLowerCase().compareTo(o2.getName().toLowerCase());
+        }
+    };
+
+    private static final Comparator<VideoGroup> VIDEO_GROUP_NAME_COMPARATOR = new Comparator<VideoGroup>() {
+        @Override
+        public int compare(VideoGroup o1, VideoGroup o2) {
+            return VIDEO_NAME_COMPARATOR.compare(o1.getVideo(), o2.getVideo());
+        }
+    };
+
+    private final Context mContext;
+    private final ArrayObjectAdapter mRowsAdapter;
+    private final Presenter mCardPresenter;
+    private final Presenter mTvShowsCardPresenter;
+    private final String mUnmatchedHeader;
+    private final String mAllTvShowsHeader;
+
+    private final Map<String, ListRow> mRows = new HashMap<String, ListRow>();
+    private final Map<Long, String> mSourceCategories = new HashMap<Long, String>();
+    private final Map<String, VideoGroup> mTvShowGroups = new HashMap<String, VideoGroup>();
+
+    public BrowseModel(Context context, ArrayObjectAdapter rowsAdapter, Presenter cardPresenter,
+                       Presenter tvShowsCardPresenter, Collection<Source> sources) {
+
+        mContext = context;
+        mRowsAdapter = rowsAdapter;
+        mCardPresenter = cardPresenter;
+        mTvShowsCardPresenter = tvShowsCardPresenter;
+        mUnmatchedHeader = context.getString(R.string.unmatched);
+        mAllTvShowsHeader = context.getString(R.string.all_tv_shows);
+
+        for (Source source : sources) {
+            addSource(source);
+        }
+    }
+
+    public ArrayObjectAdapter getRowsAdapter() {
+        return mRowsAdapter;
+    }
+
+    /**
+     * Registers a source so its movies get an "All ..." row named after the source's folder.
+     */
+    public void addSource(Source source) {
+        String[] sections = source.toString().split("/");
+        String category = String.format(mContext.getString(R.string.all_category_placeholder),
+                sections[sections.length - 1]);
+        mSourceCategories.put(source.getId(), category);
+    }
+
+    /**
+     * Adds the "All ..." row of a movie source, unless the source has no matched movies.
+     */
+    public void addMovieRow(long sourceId, PagedVideoAdapter adapter) {
+        String category = mSourceCategories.get(sourceId);
+        if (category != null && adapter.size() > 0) {
+            addRow(0, new ListRow(new HeaderItem(0, category, null), adapter));
+        }
+    }
+
+    /**
+     * Adds groups loaded from the database to the "All TV Shows" row. Episodes added later are
+     * counted into these groups.
+     */
+    public void addTvShowGroups(Collection<VideoGroup> groups) {
+        List<Object> newGroups = new ArrayList<Object>(groups.size());
+        for (VideoGroup group : groups) {
+            if (!mTvShowGroups.containsKey(group.getVideo().getName())) {
+                mTvShowGroups.put(group.getVideo().getName(), group);
+                newGroups.add(group);
+            }
+        }
+
+        if (newGroups.isEmpty()) {
+            return;
+        }
+
+        ListRow row = findRow(mAllTvShowsHeader);
+        if (row == null) {
+            row = createRow(mAllTvShowsHeader);
+        }
+        ((SortedObjectAdapter) row.getAdapter()).addAll(newGroups);
+    }
+
+    /**
+     * Stops the background work of the movie rows, once the model is no longer displayed.
+     */
+    public void release() {
+        for (ListRow row : mRows.values()) {
+            if (row.getAdapter() instanceof PagedVideoAdapter) {
+                ((PagedVideoAdapter) row.getAdapter()).cancel();
+            }
+        }
+    }
+
+    public ListRow findRow(String headerName) {
+        return mRows.get(headerName);
+    }
+
+    public void addRow(ListRow row) {
+        addRow(mRowsAdapter.size(), row);
+    }
+
+    public void addRow(int index, ListRow row) {
+        mRowsAdapter.add(index, row);
+        mRows.put(row.getHeaderItem().getName(), row);
+    }
+
+    /**
+     * Adds the videos to their rows. Each row receives its new items in one sorted insert, so
+     * observers see a single change per row rather than one per video.
+     */
+    public void addVideos(Collection<Video> videos) {
+        Map<String, List<Object>> newItems = new LinkedHashMap<String, List<Object>>();
+        Set<VideoGroup> updatedGroups = new HashSet<VideoGroup>();
+        Set<Long> updatedSources = new HashSet<Long>();
+
+        for (Video video : videos) {
+            if (!video.isMatched()) {
+                queue(newItems, mUnmatchedHeader, video);
+            } else if (video.isMovie()) {
+                // the source's row reads its movies from the database
+                if (mSourceCategories.containsKey(video.getSourceId())) {
+                    updatedSources.add(video.getSourceId());
+                }
+            } else {
+                VideoGroup group = mTvShowGroups.get(video.getName());
+
+                // if the show already has a group, increment the episode count
+                // if not, create a new group for the show
+                if (group != null) {
+                    if (TextUtils.isEmpty(group.getVideo().getCardImageUrl())) {
+                        group.getVideo().setCardImageUrl(video.getCardImageUrl());
+                    }
+
+                    group.increment();
+                    updatedGroups.add(group);
+                } else {
+                    group = new VideoGroup(video);
+                    mTvShowGroups.put(video.getName(), group);
+                    queue(newItems, mAllTvShowsHeader, group);
+                }
+            }
+        }
+
+        for (Map.Entry<String, List<Object>> entry : newItems.entrySet()) {
+            ListRow row = findRow(entry.getKey());
+
+            // if not found, create a new row for the items
+            if (row == null) {
+                row = createRow(entry.getKey());
+            }
+
+            ((SortedObjectAdapter) row.getAdapter()).addAll(entry.getValue());
+        }
+
+        for (Long sourceId : updatedSources) {
+            String category = mSourceCategories.get(sourceId);
+            ListRow row = findRow(category);
+
+            if (row == null) {
+                row = new ListRow(new HeaderItem(0, category, null),
+                        new PagedVideoAdapter(sourceId, mCardPresenter));
+                addRow(0, row);
+            }
+
+            ((PagedVideoAdapter) row.getAdapter()).refresh();
+        }
+
+        ListRow tvShowsRow = findRow(mAllTvShowsHeader);
+        if (tvShowsRow != null) {
+            SortedObjectAdapter adapter = (SortedObjectAdapter) tvShowsRow.getAdapter();
+            for (VideoGroup group : updatedGroups) {
+                int position = adapter.indexOf(group);
+                if (position >= 0) {
+                    adapter.notifyArrayItemRangeChanged(position, 1);
+                }
+            }
+        }
+    }
+
+    private void queue(Map<String, List<Object>> newItems, String headerName, Object item) {
+        List<Object> items = newItems.get(headerName);
+        if (items == null) {
+            items = new ArrayList<Object>();
+            newItems.put(headerName, items);
+        }
+        items.add(item);
+    }
+
+    private ListRow createRow(String headerName) {
+        HeaderItem header = new HeaderItem(0, headerName, null);
+        ListRow row;
+
+        if (mUnmatchedHeader.equals(headerName)) {
+            row = new ListRow(header, new SortedObjectAdapter(VIDEO_NAME_COMPARATOR, mCardPresenter));
+            addRow(mRowsAdapter.size() > 1 ? mRowsAdapter.size() - 1 : 0, row);
+        } else {
+            row = new ListRow(header, new SortedObjectAdapter(VIDEO_GROUP_NAME_COMPARATOR,
+                    mTvShowsCardPresenter));
+            addRow(0, row);
+        }
+
+        return row;
+    }
+}
@@ -16,240 +16,260 @@
 
 package com.jerrellmardis.amphitheatre.widget;
 
+import android.animation.ArgbEvaluator;
+import android.animation.ValueAnimator;
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.graphics.Bitmap;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
-import android.preference.PreferenceManager;
 import android.support.v17.leanback.widget.ImageCardView;
 import android.support.v17.leanback.widget.Presenter;
-import android.support.v7.graphics.Palette;
+import android.text.TextUtils;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
-import android.widget.ImageView;
 import android.widget.RelativeLayout;
 import android.widget.TextView;
 
 import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.jerrellmardis.amphitheatre.util.Constants;
 import com.jerrellmardis.amphitheatre.util.Enums;
-import com.jerrellmardis.amphitheatre.util.Utils;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
+import com.jerrellmardis.amphitheatre.util.PaletteCache;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Target;
 
 public class CardPresenter extends Presenter {
 
+    public static final int CARD_HEIGHT = 400;
+    public static final int CARD_WIDTH = Math.round(CARD_HEIGHT * (2 / 3f));
+
     protected final Context mContext;
-    protected int mCardHeight = 400;
-    protected int mCardWidth = Math.round(mCardHeight * (2 / 3f));
-    protected final SharedPreferences mSharedPrefs;
+    protected int mCardHeight = CARD_HEIGHT;
+    protected int mCardWidth = CARD_WIDTH;
+    protected final CardSettings mSettings;
+    protected final ImageRequestScheduler mScheduler;
+
+    private final String mEpisodeFormat;
+    private final String mRatingFormat;
 
     public CardPresenter(Context context) {
         mContext = context;
-        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(mContext);
+        mSettings = CardSettings.get(context);
+        mScheduler = ImageRequestScheduler.getInstance(context);
+        mEpisodeFormat = context.getString(R.string.tv_show_card_description);
+        mRatingFormat = context.getString(R.string.rating_description);
     }
 
     @Override
     public ViewHolder onCreateViewHolder(ViewGroup parent) {
-        final ImageCardView cardView = new ImageCardView(mContext);
+        ImageCardView cardView = new ImageCardView(mContext);
+        final ViewHolder holder = new ViewHolder(cardView, mSettings);
 
         cardView.setOnFocusChangeListener(new View.OnFocusChangeListener() {
             @Override
-            public void onFocusChange(View view, final boolean isFocused) {
-                setFocusState(cardView, isFocused, view);
+            public void onFocusChange(View view, boolean isFocused) {
+                holder.setFocusState(isFocused);
+
+                // move the image of the focused card ahead of the cards scrolled past
+                if (isFocused && holder.mIsImageLoading) {
+                    loadImage(holder, holder.mImageUrl);
+                }
             }
         });
 
         cardView.setFocusable(true);
         cardView.setFocusableInTouchMode(true);
         cardView.setBackgroundColor(mContext.getResources().getColor(R.color.fastlane_background));
-        return new ViewHolder(cardView);
-    }
-
-    private void setFocusState(final ImageCardView cardView, final boolean isFocused, View view) {
-        final Drawable mainImage = ((ImageView)view.findViewById(R.id.main_image)).getDrawable();
-
-        if (isFocused) {
-            ((TextView)cardView.findViewById(R.id.title_text)).setMaxLines(4);
-        }
-        else {
-            ((TextView)cardView.findViewById(R.id.title_text)).setMaxLines(1);
-        }
-
-        if (mainImage != null) {
-            Palette.generateAsync(((BitmapDrawable) mainImage).getBitmap(), new Palette.PaletteAsyncListener() {
-
-                @Override
-                public void onGenerated(Palette palette) {
-
-                    if (isFocused) {
-                        Utils.animateColorChange(
-                                cardView.findViewById(R.id.info_field),
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_BACKGROUND_UNSELECTED, ""),
-                                        mContext.getResources().getColor(R.color.lb_basic_card_info_bg_color)),
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_BACKGROUND_SELECTED, ""),
-                                        mContext.getResources().getColor(R.color.lb_basic_card_info_bg_color))
-                        );
-
-                        ((TextView)cardView.findViewById(R.id.title_text)).setTextColor(
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_TITLE_SELECTED, ""),
-                                        mContext.getResources().getColor(R.color.lb_basic_card_title_text_color))
-                        );
-
-                        ((TextView)cardView.findViewById(R.id.content_text)).setTextColor(
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_CONTENT_SELECTED, ""),
-                                        mContext.getResources().getColor(R.color.lb_basic_card_content_text_color))
-                        );
-                    }
-                    else {
-                        Utils.animateColorChange(
-                                cardView.findViewById(R.id.info_field),
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_BACKGROUND_SELECTED, ""),
-                                        mContext.getResources().getColor(R.color.lb_basic_card_info_bg_color)),
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_BACKGROUND_UNSELECTED, ""),
-                                        mContext.getResources().getColor(R.color.lb_basic_card_info_bg_color))
-                        );
-
-                        ((TextView)cardView.findViewById(R.id.title_text)).setTextColor(
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_TITLE_UNSELECTED, ""),
-                                        mContext.getResources().getColor(R.color.lb_basic_card_title_text_color))
-                        );
-
-                        ((TextView)cardView.findViewById(R.id.content_text)).setTextColor(
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_CONTENT_UNSELECTED, ""),
-                                        mContext.getResources().getColor(R.color.lb_basic_card_content_text_color))
-                        );
-                    }
-                }
-            });
-        }
+        cardView.setMainImageDimensions(mCardWidth, mCardHeight);
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(Presenter.ViewHolder viewHolder, Object item) {
-        Video video = (Video) item;
         ViewHolder holder = (ViewHolder) viewHolder;
 
-        holder.mCardView.setTitleText(video.getName());
-        holder.mCardView.setMainImageDimensions(mCardWidth, mCardHeight);
+        if (item == PagedVideoAdapter.PLACEHOLDER) {
+            bind(holder, null, null, null);
+            return;
+        }
+
+        Video video = (Video) item;
 
+        String content = null;
         if (video.getTvShow() != null && video.getTvShow().getEpisode() != null) {
-            holder.mCardView.setContentText(String.format(
-                    mContext.getString(R.string.tv_show_card_description),
+            content = String.format(mEpisodeFormat,
                     video.getTvShow().getEpisode().getSeasonNumber(),
-                    video.getTvShow().getEpisode().getEpisodeNumber()));
+                    video.getTvShow().getEpisode().getEpisodeNumber());
         } else if (video.getMovie() != null && video.getMovie().getVoteAverage() != null) {
-            holder.mCardView.setContentText(String.format(
-                    mContext.getString(R.string.rating_description),
-                    video.getMovie().getVoteAverage()));
+            content = String.format(mRatingFormat, video.getMovie().getVoteAverage());
         } else if (video.getMovie() != null) {
-            holder.mCardView.setContentText(String.format(
-                    mContext.getString(R.string.rating_description), 0.0d));
+            content = String.format(mRatingFormat, 0.0d);
         }
 
-        Picasso.with(mContext)
-                .load(video.getCardImageUrl())
-                .placeholder(R.drawable.placeholder)
-                .resize(mCardWidth, mCardHeight)
-                .centerCrop()
-                .into(holder);
+        bind(holder, video.getName(), content,
+                ImageUtils.getPosterUrl(mContext, video.getCardImageUrl(), mCardWidth));
+    }
 
-        //rebuild the layout for the info area so it expands when we set the maxlines higher
-        FrameLayout.LayoutParams infoLayout = new FrameLayout.LayoutParams(
-                RelativeLayout.LayoutParams.MATCH_PARENT,
-                RelativeLayout.LayoutParams.WRAP_CONTENT
-        );
-        holder.mCardView.findViewById(R.id.info_field).setLayoutParams(infoLayout);
-        RelativeLayout.LayoutParams contentLayout = new RelativeLayout.LayoutParams(
-                RelativeLayout.LayoutParams.MATCH_PARENT,
-                RelativeLayout.LayoutParams.WRAP_CONTENT
-        );
-        contentLayout.addRule(RelativeLayout.BELOW, R.id.title_text);
-        holder.mCardView.findViewById(R.id.content_text).setLayoutParams(contentLayout);
+    /**
+     * Fills a card, replacing everything a recycled card showed before. Every presenter binds
+     * through here.
+     */
+    protected void bind(ViewHolder holder, String title, String content, String imageUrl) {
+        holder.mCardView.setTitleText(title);
+        holder.mCardView.setContentText(content);
+        loadImage(holder, imageUrl);
 
         // set color to standard for when the user scrolls and the view is reused
-        Utils.animateColorChange(
-                holder.mCardView.findViewById(R.id.info_field),
-                holder.mCardView.findViewById(R.id.info_field).getDrawingCacheBackgroundColor(),
-                mContext.getResources().getColor(R.color.lb_basic_card_info_bg_color)
-        );
+        holder.resetInfoColor();
     }
 
     @Override
     public void onUnbindViewHolder(Presenter.ViewHolder viewHolder) { }
 
+    /**
+     * Loads an image into a card through the {@link ImageRequestScheduler}.
+     */
+    protected void loadImage(ViewHolder holder, String url) {
+        holder.mImageUrl = url;
+        holder.mIsImageLoading = url != null;
+
+        mScheduler.load(url, holder.mCardView.hasFocus())
+                .placeholder(R.drawable.placeholder)
+                .resize(mCardWidth, mCardHeight)
+                .centerCrop()
+                .into(holder);
+    }
+
     static class ViewHolder extends Presenter.ViewHolder implements Target {
 
         protected final ImageCardView mCardView;
-        private final SharedPreferences mSharedPrefs;
+        private final View mInfoField;
+        private final TextView mTitleView;
+        private final TextView mContentView;
+        private final CardSettings mSettings;
+
+        // the image being loaded into the card, which keys its palette colors
+        protected String mImageUrl;
+        private boolean mIsImageLoading;
 
-        public ViewHolder(View view) {
+        // reused for every color change of the info area, created on first use
+        private ValueAnimator mInfoAnimator;
+
+        public ViewHolder(View view, CardSettings settings) {
             super(view);
             mCardView = (ImageCardView) view;
-            mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(mCardView.getContext());
+            mInfoField = mCardView.findViewById(R.id.info_field);
+            mTitleView = (TextView) mCardView.findViewById(R.id.title_text);
+            mContentView = (TextView) mCardView.findViewById(R.id.content_text);
+            mSettings = settings;
+
+            //rebuild the layout for the info area so it expands when we set the maxlines higher
+            mInfoField.setLayoutParams(new FrameLayout.LayoutParams(
+                    RelativeLayout.LayoutParams.MATCH_PARENT,
+                    RelativeLayout.LayoutParams.WRAP_CONTENT
+            ));
+            RelativeLayout.LayoutParams contentLayout = new RelativeLayout.LayoutParams(
+                    RelativeLayout.LayoutParams.MATCH_PARENT,
+                    RelativeLayout.LayoutParams.WRAP_CONTENT
+            );
+            contentLayout.addRule(RelativeLayout.BELOW, R.id.title_text);
+            mContentView.setLayoutParams(contentLayout);
+        }
 
-            Utils.checkPrefs(mSharedPrefs);
+        void setFocusState(boolean isFocused) {
+            mTitleView.setMaxLines(isFocused ? 4 : 1);
+
+            PaletteCache.Colors colors = PaletteCache.get(mImageUrl);
+            if (colors == null) {
+                return;
+            }
+
+            int selectedInfoColor = colors.getColor(mSettings.mBackgroundSelected,
+                    mSettings.mDefaultInfoColor);
+            int unselectedInfoColor = colors.getColor(mSettings.mBackgroundUnselected,
+                    mSettings.mDefaultInfoColor);
+
+            if (isFocused) {
+                animateInfoColor(unselectedInfoColor, selectedInfoColor);
+                mTitleView.setTextColor(colors.getColor(mSettings.mTitleSelected,
+                        mSettings.mDefaultTitleColor));
+                mContentView.setTextColor(colors.getColor(mSettings.mContentSelected,
+                        mSettings.mDefaultContentColor));
+            } else {
+                animateInfoColor(selectedInfoColor, unselectedInfoColor);
+                mTitleView.setTextColor(colors.getColor(mSettings.mTitleUnselected,
+                        mSettings.mDefaultTitleColor));
+                mContentView.setTextColor(colors.getColor(mSettings.mContentUnselected,
+                        mSettings.mDefaultContentColor));
+            }
+        }
+
+        void resetInfoColor() {
+            if (mInfoAnimator != null) {
+                mInfoAnimator.cancel();
+            }
+            mInfoField.setBackgroundColor(mSettings.mDefaultInfoColor);
+        }
+
+        private void animateInfoColor(int colorFrom, int colorTo) {
+            if (mInfoAnimator == null) {
+                mInfoAnimator = ValueAnimator.ofObject(new ArgbEvaluator(), colorFrom, colorTo);
+                mInfoAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+                    @Override
+                    public void onAnimationUpdate(ValueAnimator animator) {
+                        mInfoField.setBackgroundColor((Integer) animator.getAnimatedValue());
+                    }
+                });
+            } else {
+                mInfoAnimator.cancel();
+                mInfoAnimator.setObjectValues(colorFrom, colorTo);
+            }
+            mInfoAnimator.start();
         }
 
         @Override
         public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from) {
+            mIsImageLoading = false;
+
             Drawable bitmapDrawable = new BitmapDrawable(mCardView.getContext().getResources(), bitmap);
             mCardView.setMainImage(bitmapDrawable);
 
-            Palette.generateAsync(bitmap, new Palette.PaletteAsyncListener() {
+            PaletteCache.Colors colors = PaletteCache.get(mImageUrl);
+            if (colors != null) {
+                applyColors(colors);
+                return;
+            }
+
+            PaletteCache.load(mCardView.getContext(), mImageUrl, bitmap, new PaletteCache.Callback() {
                 @Override
-                public void onGenerated(Palette palette) {
-                    if (Enums.PalettePresenterType.valueOf(mSharedPrefs.getString(Constants.PALETTE_BACKGROUND_VISIBLE, "")) == Enums.PalettePresenterType.ALLCARDS) {
-                        Utils.animateColorChange(
-                                mCardView.findViewById(R.id.info_field),
-                                mCardView.getContext().getResources().getColor(R.color.lb_basic_card_info_bg_color),
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_BACKGROUND_UNSELECTED, ""),
-                                        mCardView.getContext().getResources().getColor(R.color.lb_basic_card_info_bg_color))
-                        );
-                    }
-                    if (Enums.PalettePresenterType.valueOf(mSharedPrefs.getString(Constants.PALETTE_TITLE_VISIBLE, "")) == Enums.PalettePresenterType.ALLCARDS) {
-                        ((TextView)mCardView.findViewById(R.id.title_text)).setTextColor(
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_TITLE_UNSELECTED, ""),
-                                        mCardView.getContext().getResources().getColor(R.color.lb_basic_card_title_text_color))
-                        );
-                    }
-                    if (Enums.PalettePresenterType.valueOf(mSharedPrefs.getString(Constants.PALETTE_CONTENT_VISIBLE, "")) == Enums.PalettePresenterType.ALLCARDS) {
-                        ((TextView)mCardView.findViewById(R.id.content_text)).setTextColor(
-                                Utils.getPaletteColor(
-                                        palette,
-                                        mSharedPrefs.getString(Constants.PALETTE_CONTENT_UNSELECTED, ""),
-                                        mCardView.getContext().getResources().getColor(R.color.lb_basic_card_content_text_color))
-                        );
+                public void onColorsLoaded(String url, PaletteCache.Colors colors) {
+                    // the card may have been rebound while the colors were loading
+                    if (TextUtils.equals(url, mImageUrl)) {
+                        applyColors(colors);
                     }
                 }
             });
         }
 
+        private void applyColors(PaletteCache.Colors colors) {
+            if (mSettings.mBackgroundVisible == Enums.PalettePresenterType.ALLCARDS) {
+                animateInfoColor(mSettings.mDefaultInfoColor,
+                        colors.getColor(mSettings.mBackgroundUnselected, mSettings.mDefaultInfoColor));
+            }
+            if (mSettings.mTitleVisible == Enums.PalettePresenterType.ALLCARDS) {
+                mTitleView.setTextColor(colors.getColor(mSettings.mTitleUnselected,
+                        mSettings.mDefaultTitleColor));
+            }
+            if (mSettings.mContentVisible == Enums.PalettePresenterType.ALLCARDS) {
+                mContentView.setTextColor(colors.getColor(mSettings.mContentUnselected,
+                        mSettings.mDefaultContentColor));
+            }
+        }
+
         @Override
         public void onBitmapFailed(Drawable errorDrawable) {
+            mIsImageLoading = false;
             mCardView.setMainImage(errorDrawable);
         }
 
@@ -257,7 +277,5 @@ public class CardPresenter extends Presenter {
         public void onPrepareLoad(Drawable placeHolderDrawable) {
             mCardView.setMainImage(placeHolderDrawable);
         }
-
-
     }
 }
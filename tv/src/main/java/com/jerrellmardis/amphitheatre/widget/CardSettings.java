@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.widget;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Resources;
+import android.preference.PreferenceManager;
+import android.text.TextUtils;
+
+import com.jerrellmardis.amphitheatre.R;
+import com.jerrellmardis.amphitheatre.util.Constants;
+import com.jerrellmardis.amphitheatre.util.Enums;
+import com.jerrellmardis.amphitheatre.util.Utils;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+/**
+ * The card customization settings, parsed once and kept up to date by a preference listener so
+ * binding and focusing a card never has to read the preferences.
+ *
+ * A palette color of null means the card's default color is used.
+ */
+final class CardSettings implements SharedPreferences.OnSharedPreferenceChangeListener {
+
+    // also keeps the listener reachable, the preferences only hold a weak reference to it
+    private static CardSettings sInstance;
+
+    private final SharedPreferences mSharedPrefs;
+
+    final int mDefaultInfoColor;
+    final int mDefaultTitleColor;
+    final int mDefaultContentColor;
+
+    private final String mAiredFormat;
+    private final SimpleDateFormat mAirDateParser = new SimpleDateFormat("yyyy-MM-dd");
+    private final DateFormat mDateFormat = DateFormat.getDateInstance();
+
+    Enums.PalettePresenterType mBackgroundVisible;
+    Enums.PaletteColor mBackgroundSelected;
+    Enums.PaletteColor mBackgroundUnselected;
+
+    Enums.PalettePresenterType mTitleVisible;
+    Enums.PaletteColor mTitleSelected;
+    Enums.PaletteColor mTitleUnselected;
+
+    Enums.PalettePresenterType mContentVisible;
+    Enums.PaletteColor mContentSelected;
+    Enums.PaletteColor mContentUnselected;
+
+    private CardSettings(Context context) {
+        Resources res = context.getResources();
+        mDefaultInfoColor = res.getColor(R.color.lb_basic_card_info_bg_color);
+        mDefaultTitleColor = res.getColor(R.color.lb_basic_card_title_text_color);
+        mDefaultContentColor = res.getColor(R.color.lb_basic_card_content_text_color);
+        mAiredFormat = res.getString(R.string.aired);
+
+        mSharedPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+        Utils.checkPrefs(mSharedPrefs);
+        load();
+
+        mSharedPrefs.registerOnSharedPreferenceChangeListener(this);
+    }
+
+    /**
+     * Returns the shared settings. Must be called from the main thread.
+     */
+    static CardSettings get(Context context) {
+        if (sInstance == null) {
+            sInstance = new CardSettings(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns the "aired" line of an episode card.
+     *
+     * @param airDate the air date in "yyyy-MM-dd" format, as TMDb returns it
+     * @return the line, or null if the date is missing or malformed
+     */
+    String formatAired(String airDate) {
+        if (TextUtils.isEmpty(airDate)) {
+            return null;
+        }
+
+        try {
+            return String.format(mAiredFormat, mDateFormat.format(mAirDateParser.parse(airDate)));
+        } catch (ParseException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+        if (Constants.PALETTE_BACKGROUND_VISIBLE.equals(key) ||
+                Constants.PALETTE_BACKGROUND_SELECTED.equals(key) ||
+                Constants.PALETTE_BACKGROUND_UNSELECTED.equals(key) ||
+                Constants.PALETTE_TITLE_VISIBLE.equals(key) ||
+                Constants.PALETTE_TITLE_SELECTED.equals(key) ||
+                Constants.PALETTE_TITLE_UNSELECTED.equals(key) ||
+                Constants.PALETTE_CONTENT_VISIBLE.equals(key) ||
+                Constants.PALETTE_CONTENT_SELECTED.equals(key) ||
+                Constants.PALETTE_CONTENT_UNSELECTED.equals(key)) {
+            load();
+        }
+    }
+
+    private void load() {
+        mBackgroundVisible = getPresenterType(Constants.PALETTE_BACKGROUND_VISIBLE);
+        mBackgroundSelected = getColor(Constants.PALETTE_BACKGROUND_SELECTED);
+        mBackgroundUnselected = getColor(Constants.PALETTE_BACKGROUND_UNSELECTED);
+
+        mTitleVisible = getPresenterType(Constants.PALETTE_TITLE_VISIBLE);
+        mTitleSelected = getColor(Constants.PALETTE_TITLE_SELECTED);
+        mTitleUnselected = getColor(Constants.PALETTE_TITLE_UNSELECTED);
+
+        mContentVisible = getPresenterType(Constants.PALETTE_CONTENT_VISIBLE);
+        mContentSelected = getColor(Constants.PALETTE_CONTENT_SELECTED);
+        mContentUnselected = getColor(Constants.PALETTE_CONTENT_UNSELECTED);
+    }
+
+    private Enums.PalettePresenterType getPresenterType(String key) {
+        String value = mSharedPrefs.getString(key, "");
+        return TextUtils.isEmpty(value) ?
+                Enums.PalettePresenterType.NOTHING : Enums.PalettePresenterType.valueOf(value);
+    }
+
+    private Enums.PaletteColor getColor(String key) {
+        String value = mSharedPrefs.getString(key, "");
+        return TextUtils.isEmpty(value) ? null : Enums.PaletteColor.valueOf(value);
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.widget;
+
+import android.content.Context;
+import android.os.SystemClock;
+
+import com.jerrellmardis.amphitheatre.util.ArtworkCache;
+import com.jerrellmardis.amphitheatre.util.Debouncer;
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.RequestCreator;
+
+/**
+ * Orders card image requests so the card the user is looking at loads first.
+ *
+ * The focused card's image is requested with a high priority. Every other card is tagged so its
+ * request can be held back: while selections arrive faster than
+ * {@link #FAST_SCROLL_INTERVAL_MS} apart the user is flinging through a row, and downloads for
+ * the cards scrolled past are paused until the selection has settled for
+ * {@link #SETTLE_DELAY_MS}. Images already in memory are still shown while paused, and requests
+ * for cards that are rebound in the meantime are replaced by Picasso before they ever start.
+ *
+ * Must only be used from the main thread.
+ */
+public final class ImageRequestScheduler {
+
+    private static final long FAST_SCROLL_INTERVAL_MS = 150;
+    private static final long SETTLE_DELAY_MS = 250;
+
+    private static final Object CARD_TAG = new Object();
+    private static final Object FOCUSED_CARD_TAG = new Object();
+
+    private static ImageRequestScheduler sInstance;
+
+    private final Picasso mPicasso;
+    private final Debouncer mResumeDebouncer;
+    private long mLastSelectionTime;
+    private boolean mPaused;
+
+    private ImageRequestScheduler(Context context) {
+        mPicasso = ArtworkCache.getCardPicasso(context);
+        mResumeDebouncer = new Debouncer(SETTLE_DELAY_MS, new Runnable() {
+            @Override
+            public void run() {
+                resume();
+            }
+        });
+    }
+
+    public static ImageRequestScheduler getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new ImageRequestScheduler(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    /**
+     * Returns a request for a card image, prioritized if the card has focus.
+     */
+    public RequestCreator load(String url, boolean isFocused) {
+        RequestCreator request = mPicasso.load(url);
+        if (isFocused) {
+            return request.priority(Picasso.Priority.HIGH).tag(FOCUSED_CARD_TAG);
+        }
+        return request.tag(CARD_TAG);
+    }
+
+    /**
+     * Tells the scheduler the selected item changed, from the fragments' item selected listeners.
+     */
+    public void onSelectionChanged() {
+        long now = SystemClock.uptimeMillis();
+        boolean isFastScroll = now - mLastSelectionTime < FAST_SCROLL_INTERVAL_MS;
+        mLastSelectionTime = now;
+
+        if (isFastScroll && !mPaused) {
+            mPaused = true;
+            mPicasso.pauseTag(CARD_TAG);
+        }
+
+        if (mPaused) {
+            mResumeDebouncer.trigger();
+        }
+    }
+
+    private void resume() {
+        if (mPaused) {
+            mPaused = false;
+            mPicasso.resumeTag(CARD_TAG);
+        }
+    }
+}
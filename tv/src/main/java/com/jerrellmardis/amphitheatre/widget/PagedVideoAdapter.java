@@ -0,0 +1,272 @@
+/*
+ * Copyright (C) 2014 Jerrell Mardis
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.jerrellmardis.amphitheatre.widget;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v17.leanback.widget.ObjectAdapter;
+import android.support.v17.leanback.widget.Presenter;
+import android.util.LruCache;
+import android.util.SparseArray;
+
+import com.jerrellmardis.amphitheatre.db.QueryExecutor;
+import com.jerrellmardis.amphitheatre.db.VideoDao;
+import com.jerrellmardis.amphitheatre.model.Video;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An {@link ObjectAdapter} over the matched movies of a source that reads its items from the
+ * database a page at a time.
+ *
+ * The adapter reports the full size of the row but only keeps {@link #MAX_CACHED_PAGES} pages in
+ * memory, least recently used first out. Positions whose page isn't loaded yet return
+ * {@link #PLACEHOLDER} and are rebound once the page arrives. Pages next to the one being
+ * displayed are loaded ahead of time so scrolling rarely shows a placeholder.
+ *
+ * A running scan calls {@link #refresh()} for every batch of movies it adds. Those calls are
+ * coalesced, and the row only changes when its size did: the cached pages stay on screen and
+ * are reloaded in place.
+ *
+ * Must only be used from the main thread once attached.
+ */
+public class PagedVideoAdapter extends ObjectAdapter {
+
+    /**
+     * Stands in for a video whose page is still loading. Presenters bind it as an empty card.
+     */
+    public static final Object PLACEHOLDER = new Object();
+
+    private static final int PAGE_SIZE = 30;
+    private static final int PREFETCH_DISTANCE = 10;
+    private static final int MAX_CACHED_PAGES = 4;
+    private static final long REFRESH_DELAY_MS = 1000;
+
+    private final long mSourceId;
+    private final LruCache<Integer, List<Video>> mPages =
+            new LruCache<Integer, List<Video>>(MAX_CACHED_PAGES);
+    private final SparseArray<PageTask> mPageTasks = new SparseArray<PageTask>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private int mSize;
+
+    private CountTask mCountTask;
+    private boolean mIsRefreshScheduled;
+    private boolean mIsRefreshPending;
+
+    private final Runnable mRefreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            mIsRefreshScheduled = false;
+            mCountTask = new CountTask();
+            mCountTask.executeOnExecutor(QueryExecutor.get());
+        }
+    };
+
+    /**
+     * Creates an empty adapter. Call {@link #refresh()} to load it.
+     */
+    public PagedVideoAdapter(long sourceId, Presenter presenter) {
+        super(presenter);
+        mSourceId = sourceId;
+    }
+
+    /**
+     * Creates an adapter with its first page already loaded. Can be called from a background
+     * thread; see {@link #load(long, Presenter)}.
+     */
+    private PagedVideoAdapter(long sourceId, Presenter presenter, int size, List<Video> firstPage) {
+        super(presenter);
+        mSourceId = sourceId;
+        mSize = size;
+        mPages.put(0, firstPage);
+    }
+
+    /**
+     * Queries the size and the first page of the source's movies. Blocks, so it must not be
+     * called from the main thread.
+     */
+    public static PagedVideoAdapter load(long sourceId, Presenter presenter) {
+        return new PagedVideoAdapter(sourceId, presenter, VideoDao.countMoviesInSource(sourceId),
+                VideoDao.getMoviesInSource(sourceId, 0, PAGE_SIZE));
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public Object get(int position) {
+        int page = position / PAGE_SIZE;
+        int offset = position % PAGE_SIZE;
+
+        if (offset >= PAGE_SIZE - PREFETCH_DISTANCE) {
+            loadPage(page + 1);
+        } else if (offset < PREFETCH_DISTANCE) {
+            loadPage(page - 1);
+        }
+
+        List<Video> videos = mPages.get(page);
+        if (videos == null) {
+            loadPage(page);
+            return PLACEHOLDER;
+        }
+
+        return offset < videos.size() ? videos.get(offset) : PLACEHOLDER;
+    }
+
+    /**
+     * Re-reads the size of the row after a scan added movies to the source. The size is read at
+     * most once a second, and calls made while it is being read result in a single read after.
+     */
+    public void refresh() {
+        if (mCountTask != null) {
+            mIsRefreshPending = true;
+            return;
+        }
+
+        if (!mIsRefreshScheduled) {
+            mIsRefreshScheduled = true;
+            mHandler.postDelayed(mRefreshRunnable, REFRESH_DELAY_MS);
+        }
+    }
+
+    /**
+     * Stops every pending refresh and page load, e.g. when the row is discarded.
+     */
+    public void cancel() {
+        mHandler.removeCallbacks(mRefreshRunnable);
+        mIsRefreshScheduled = false;
+        mIsRefreshPending = false;
+
+        if (mCountTask != null) {
+            mCountTask.cancel(false);
+            mCountTask = null;
+        }
+
+        for (int i = 0; i < mPageTasks.size(); i++) {
+            mPageTasks.valueAt(i).cancel(false);
+        }
+        mPageTasks.clear();
+    }
+
+    public void notifyArrayItemRangeChanged(int positionStart, int itemCount) {
+        notifyItemRangeChanged(positionStart, itemCount);
+    }
+
+    private void onSizeRead(int size) {
+        mCountTask = null;
+
+        if (size != mSize) {
+            int oldSize = mSize;
+            mSize = size;
+
+            // pages in flight were read for the old size
+            for (int i = 0; i < mPageTasks.size(); i++) {
+                mPageTasks.valueAt(i).cancel(false);
+            }
+            mPageTasks.clear();
+
+            if (size > oldSize) {
+                notifyItemRangeInserted(oldSize, size - oldSize);
+            } else {
+                notifyItemRangeRemoved(size, oldSize - size);
+            }
+
+            // the new movies are sorted in between the cached ones, so the cached pages are
+            // reloaded in place while they stay on screen
+            for (Map.Entry<Integer, List<Video>> entry : mPages.snapshot().entrySet()) {
+                startPageTask(entry.getKey());
+            }
+        }
+
+        if (mIsRefreshPending) {
+            mIsRefreshPending = false;
+            refresh();
+        }
+    }
+
+    private void loadPage(int page) {
+        if (page < 0 || page * PAGE_SIZE >= mSize || mPages.get(page) != null ||
+                mPageTasks.get(page) != null) {
+            return;
+        }
+
+        startPageTask(page);
+    }
+
+    private void startPageTask(int page) {
+        if (page * PAGE_SIZE >= mSize) {
+            mPages.remove(page);
+            return;
+        }
+
+        PageTask task = new PageTask(page);
+        mPageTasks.put(page, task);
+        task.executeOnExecutor(QueryExecutor.get());
+    }
+
+    private void onPageLoaded(PageTask task, List<Video> videos) {
+        if (mPageTasks.get(task.mPage) != task) {
+            return;
+        }
+
+        mPageTasks.remove(task.mPage);
+        mPages.put(task.mPage, videos);
+
+        int start = task.mPage * PAGE_SIZE;
+        if (start < mSize) {
+            notifyItemRangeChanged(start, Math.min(PAGE_SIZE, mSize - start));
+        }
+    }
+
+    private class CountTask extends AsyncTask<Void, Void, Integer> {
+
+        @Override
+        protected Integer doInBackground(Void... params) {
+            return VideoDao.countMoviesInSource(mSourceId);
+        }
+
+        @Override
+        protected void onPostExecute(Integer size) {
+            if (mCountTask == this) {
+                onSizeRead(size);
+            }
+        }
+    }
+
+    private class PageTask extends AsyncTask<Void, Void, List<Video>> {
+
+        private final int mPage;
+
+        PageTask(int page) {
+            mPage = page;
+        }
+
+        @Override
+        protected List<Video> doInBackground(Void... params) {
+            return VideoDao.getMoviesInSource(mSourceId, mPage * PAGE_SIZE, PAGE_SIZE);
+        }
+
+        @Override
+        protected void onPostExecute(List<Video> videos) {
+            onPageLoaded(this, videos);
+        }
+    }
+}
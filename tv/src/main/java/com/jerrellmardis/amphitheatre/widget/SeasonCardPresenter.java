@@ -19,13 +19,9 @@ package com.jerrellmardis.amphitheatre.widget;
 import android.content.Context;
 import android.support.v17.leanback.widget.Presenter;
 
-import com.jerrellmardis.amphitheatre.R;
 import com.jerrellmardis.amphitheatre.model.Video;
-import com.squareup.picasso.Picasso;
-
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import com.jerrellmardis.amphitheatre.model.tmdb.Episode;
+import com.jerrellmardis.amphitheatre.util.ImageUtils;
 
 public class SeasonCardPresenter extends CardPresenter {
 
@@ -40,33 +36,13 @@ public class SeasonCardPresenter extends CardPresenter {
         Video video = (Video) item;
         ViewHolder holder = (ViewHolder) viewHolder;
 
-        String url;
         if (video.getTvShow() != null && video.getTvShow().getEpisode() != null) {
-            holder.mCardView.setTitleText(video.getTvShow().getEpisode().getName());
-            url = video.getTvShow().getEpisode().getStillPath();
-
-            try {
-                SimpleDateFormat formatter = new SimpleDateFormat("yyyy-MM-dd");
-                Date date = formatter.parse(video.getTvShow().getEpisode().getAirDate());
-                DateFormat df = DateFormat.getDateInstance();
-                String subtitle = String.format(mContext.getString(R.string.aired), df.format(date));
-                holder.mCardView.setContentText(subtitle);
-
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+            Episode episode = video.getTvShow().getEpisode();
+            bind(holder, episode.getName(), mSettings.formatAired(episode.getAirDate()),
+                    ImageUtils.getStillUrl(mContext, episode.getStillPath(), mCardWidth));
         } else {
-            holder.mCardView.setTitleText(video.getName());
-            url = video.getBackgroundImageUrl();
+            bind(holder, video.getName(), null,
+                    ImageUtils.getBackdropUrl(mContext, video.getBackgroundImageUrl(), mCardWidth));
         }
-
-        holder.mCardView.setMainImageDimensions(mCardWidth, mCardHeight);
-
-        Picasso.with(mContext)
-                .load(url)
-                .placeholder(R.drawable.placeholder)
-                .resize(mCardWidth, mCardHeight)
-                .centerCrop()
-                .into(holder);
     }
 }
@@ -16,33 +16,110 @@
 
 package com.jerrellmardis.amphitheatre.widget;
 
-import android.support.v17.leanback.widget.ArrayObjectAdapter;
+import android.support.v17.leanback.widget.ObjectAdapter;
 import android.support.v17.leanback.widget.Presenter;
 import android.support.v17.leanback.widget.PresenterSelector;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
-import java.util.TreeSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
 
 /**
+ * An {@link ObjectAdapter} that keeps its items sorted by a {@link Comparator}.
+ *
+ * Items are stored in a treap augmented with subtree sizes (an order-statistic tree), so adding,
+ * removing and looking up an item by position are all O(log n). Items that compare as equal are
+ * kept in insertion order.
+ *
  * Created by Jerrell Mardis on 8/16/14.
  */
-public class SortedObjectAdapter extends ArrayObjectAdapter {
+public class SortedObjectAdapter extends ObjectAdapter {
+
+    private final Comparator mComparator;
+    private final Random mRandom = new Random();
+    private Node mRoot;
 
-    private TreeSet<Object> mSortedItems;
+    private static final class Node {
+        final Object item;
+        final int priority;
+        Node left;
+        Node right;
+        int size = 1;
+
+        Node(Object item, int priority) {
+            this.item = item;
+            this.priority = priority;
+        }
+    }
 
     public SortedObjectAdapter(Comparator comparator, PresenterSelector presenterSelector) {
         super(presenterSelector);
-        mSortedItems = new TreeSet<Object>(comparator);
+        mComparator = comparator;
     }
 
     public SortedObjectAdapter(Comparator comparator, Presenter presenter) {
         super(presenter);
-        mSortedItems = new TreeSet<Object>(comparator);
+        mComparator = comparator;
     }
 
     public SortedObjectAdapter(Comparator comparator) {
         super();
-        mSortedItems = new TreeSet<Object>(comparator);
+        mComparator = comparator;
+    }
+
+    @Override
+    public int size() {
+        return size(mRoot);
+    }
+
+    @Override
+    public Object get(int position) {
+        Node node = mRoot;
+        int index = position;
+
+        while (node != null) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index == leftSize) {
+                return node.item;
+            } else {
+                index -= leftSize + 1;
+                node = node.right;
+            }
+        }
+
+        throw new IndexOutOfBoundsException("Invalid position " + position + ", size is " + size());
+    }
+
+    /**
+     * Returns the position of the item, or -1 if it isn't in the set.
+     *
+     * @param item The item to look for.
+     */
+    @SuppressWarnings("unchecked")
+    public int indexOf(Object item) {
+        int position = lowerBound(item);
+        int size = size();
+
+        // walk the (usually tiny) run of items that compare as equal
+        while (position < size) {
+            Object candidate = get(position);
+            if (mComparator.compare(candidate, item) != 0) {
+                break;
+            }
+            if (candidate == item || candidate.equals(item)) {
+                return position;
+            }
+            position++;
+        }
+
+        return -1;
     }
 
     /**
@@ -51,8 +128,62 @@ public class SortedObjectAdapter extends ArrayObjectAdapter {
      * @param item The item to add to the set.
      */
     public void add(Object item) {
-        mSortedItems.add(item);
-        super.add(mSortedItems.headSet(item).size(), item);
+        int position = upperBound(item);
+
+        Node[] parts = split(mRoot, position);
+        mRoot = merge(merge(parts[0], new Node(item, mRandom.nextInt())), parts[1]);
+
+        notifyItemRangeInserted(position, 1);
+    }
+
+    /**
+     * Adds all of the items to the set. The new items are sorted once and merged with the current
+     * contents, and observers get one insert notification per run of adjacent new items, which is
+     * much cheaper than adding the items one by one and keeps the rest of the row bound.
+     *
+     * @param items The items to add to the set.
+     */
+    @SuppressWarnings("unchecked")
+    public void addAll(Collection<?> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        List<Object> current = new ArrayList<Object>(size());
+        collect(mRoot, current);
+
+        // stable, so new items that compare as equal keep their order
+        List<Object> added = new ArrayList<Object>(items);
+        Collections.sort(added, mComparator);
+
+        // items already in the set stay ahead of new items that compare as equal
+        List<Object> merged = new ArrayList<Object>(current.size() + added.size());
+        List<int[]> insertedRuns = new ArrayList<int[]>();
+        int i = 0;
+        int j = 0;
+        while (i < current.size() || j < added.size()) {
+            boolean isAdded = j < added.size() &&
+                    (i == current.size() || sortsBefore(added.get(j), current.get(i)));
+            if (!isAdded) {
+                merged.add(current.get(i++));
+                continue;
+            }
+
+            int[] run = insertedRuns.isEmpty() ? null : insertedRuns.get(insertedRuns.size() - 1);
+            if (run != null && run[0] + run[1] == merged.size()) {
+                run[1]++;
+            } else {
+                insertedRuns.add(new int[] { merged.size(), 1 });
+            }
+            merged.add(added.get(j++));
+        }
+
+        mRoot = build(merged, 0, merged.size(), Integer.MAX_VALUE);
+
+        // in ascending order, so each run's position already counts the runs before it
+        for (int[] run : insertedRuns) {
+            notifyItemRangeInserted(run[0], run[1]);
+        }
     }
 
     /**
@@ -62,16 +193,159 @@ public class SortedObjectAdapter extends ArrayObjectAdapter {
      * @return True if the item was found and thus removed from the set.
      */
     public boolean remove(Object item) {
-        mSortedItems.remove(item);
-        return super.remove(item);
-    }
+        int position = indexOf(item);
+        if (position < 0) {
+            return false;
+        }
 
+        Node[] parts = split(mRoot, position);
+        Node[] rest = split(parts[1], 1);
+        mRoot = merge(parts[0], rest[1]);
+
+        notifyItemRangeRemoved(position, 1);
+        return true;
+    }
 
     /**
      * Removes all items from this set, leaving it empty.
      */
     public void clear() {
-        mSortedItems.clear();
-        super.clear();
+        int size = size();
+        mRoot = null;
+
+        if (size > 0) {
+            notifyItemRangeRemoved(0, size);
+        }
+    }
+
+    /**
+     * Notify that the content of a range of items changed. Note that this is not same as items
+     * being added or removed.
+     *
+     * @param positionStart The position of first item that has changed.
+     * @param itemCount The count of how many items have changed.
+     */
+    public void notifyArrayItemRangeChanged(int positionStart, int itemCount) {
+        notifyItemRangeChanged(positionStart, itemCount);
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean sortsBefore(Object item, Object other) {
+        return mComparator.compare(item, other) < 0;
+    }
+
+    // number of items that sort strictly before the item
+    @SuppressWarnings("unchecked")
+    private int lowerBound(Object item) {
+        int count = 0;
+        Node node = mRoot;
+
+        while (node != null) {
+            if (mComparator.compare(node.item, item) < 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return count;
+    }
+
+    // number of items that sort before or equal to the item
+    @SuppressWarnings("unchecked")
+    private int upperBound(Object item) {
+        int count = 0;
+        Node node = mRoot;
+
+        while (node != null) {
+            if (mComparator.compare(node.item, item) <= 0) {
+                count += size(node.left) + 1;
+                node = node.right;
+            } else {
+                node = node.left;
+            }
+        }
+
+        return count;
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void update(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    // splits the tree into its first "count" items and the remaining items
+    private static Node[] split(Node node, int count) {
+        if (node == null) {
+            return new Node[] { null, null };
+        }
+
+        Node[] parts;
+        if (count <= size(node.left)) {
+            parts = split(node.left, count);
+            node.left = parts[1];
+            parts[1] = node;
+        } else {
+            parts = split(node.right, count - size(node.left) - 1);
+            node.right = parts[0];
+            parts[0] = node;
+        }
+
+        update(node);
+        return parts;
+    }
+
+    // joins two trees where every item of the left tree sorts before the right tree
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    // builds a perfectly balanced tree from sorted items, priorities decreasing with depth
+    private static Node build(List<Object> items, int from, int to, int priority) {
+        if (from >= to) {
+            return null;
+        }
+
+        int middle = (from + to) >>> 1;
+        Node node = new Node(items.get(middle), priority);
+        node.left = build(items, from, middle, priority - 1);
+        node.right = build(items, middle + 1, to, priority - 1);
+        update(node);
+        return node;
+    }
+
+    // appends the items in order
+    private static void collect(Node root, List<Object> out) {
+        Deque<Node> stack = new ArrayDeque<Node>();
+        Node node = root;
+
+        while (node != null || !stack.isEmpty()) {
+            while (node != null) {
+                stack.push(node);
+                node = node.left;
+            }
+            node = stack.pop();
+            out.add(node.item);
+            node = node.right;
+        }
     }
 }
\ No newline at end of file